@@ -0,0 +1,115 @@
+package com.beijunyi.parallelgit.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.beijunyi.parallelgit.filesystem.Gfs;
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration;
+import com.beijunyi.parallelgit.utils.BranchUtils;
+import com.beijunyi.parallelgit.utils.CacheUtils;
+import com.beijunyi.parallelgit.utils.CommitUtils;
+import com.beijunyi.parallelgit.utils.RepositoryUtils;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.FileUtils;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.eclipse.jgit.lib.Constants.encode;
+import static org.eclipse.jgit.lib.FileMode.REGULAR_FILE;
+
+public final class BenchmarkRepositories {
+
+  public static final String MEMORY = "memory";
+  public static final String FILE = "file";
+
+  public static final int FILES_PER_DIRECTORY = 32;
+
+  @Nonnull
+  public static Repository newRepository(String type) throws IOException {
+    switch(type) {
+      case MEMORY:
+        return new InMemoryRepository(new DfsRepositoryDescription());
+      case FILE:
+        File dir = FileUtils.createTempDir("parallelgit-benchmark", null, null);
+        return RepositoryUtils.createRepository(dir, true);
+      default:
+        throw new IllegalArgumentException(type);
+    }
+  }
+
+  public static void deleteRepository(Repository repo) throws IOException {
+    repo.close();
+    File dir = repo.getDirectory();
+    if(dir != null && dir.exists())
+      FileUtils.delete(dir, FileUtils.RECURSIVE);
+  }
+
+  @Nonnull
+  public static GitFileSystem openFileSystem(GfsConfiguration cfg) throws IOException {
+    cfg.repository().incrementOpen();
+    return Gfs.newFileSystem(cfg);
+  }
+
+  @Nonnull
+  public static GitFileSystem openFileSystem(String branch, Repository repo) throws IOException {
+    return openFileSystem(GfsConfiguration.repo(repo).branch(branch));
+  }
+
+  @Nonnull
+  public static String pathOf(int file) {
+    return "/dir" + file / FILES_PER_DIRECTORY + "/file" + file + ".txt";
+  }
+
+  @Nonnull
+  public static byte[] contentOf(int file, String version) {
+    return encode(version + " content of file " + file);
+  }
+
+  @Nonnull
+  public static RevCommit commitFiles(String branch, int files, Repository repo) throws IOException {
+    DirCache cache = DirCache.newInCore();
+    DirCacheBuilder builder = cache.builder();
+    try(ObjectInserter inserter = repo.newObjectInserter()) {
+      for(int i = 0; i < files; i++) {
+        ObjectId blob = inserter.insert(OBJ_BLOB, contentOf(i, branch));
+        CacheUtils.addFile(pathOf(i), REGULAR_FILE, blob, builder);
+      }
+      inserter.flush();
+    }
+    builder.finish();
+    return commitToBranch(branch, cache, null, repo);
+  }
+
+  @Nonnull
+  public static RevCommit commitChanges(String branch, RevCommit base, int files, int stride, int offset, Repository repo) throws IOException {
+    DirCache cache = CacheUtils.forRevision(base, repo);
+    try(ObjectInserter inserter = repo.newObjectInserter()) {
+      for(int i = offset; i < files; i += stride) {
+        ObjectId blob = inserter.insert(OBJ_BLOB, contentOf(i, branch));
+        CacheUtils.updateFileBlob(pathOf(i), blob, cache);
+      }
+      inserter.flush();
+    }
+    return commitToBranch(branch, cache, base, repo);
+  }
+
+  @Nonnull
+  private static RevCommit commitToBranch(String branch, DirCache cache, @Nullable RevCommit parent, Repository repo) throws IOException {
+    RevCommit ret = CommitUtils.createCommit("benchmark commit on " + branch, cache, parent, repo);
+    if(BranchUtils.branchExists(branch, repo))
+      BranchUtils.resetBranchHead(branch, ret, repo);
+    else
+      BranchUtils.initBranch(branch, ret, repo);
+    return ret;
+  }
+
+}
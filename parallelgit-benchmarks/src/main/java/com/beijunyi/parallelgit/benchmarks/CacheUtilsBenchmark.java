@@ -0,0 +1,62 @@
+package com.beijunyi.parallelgit.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.beijunyi.parallelgit.utils.CacheUtils;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.openjdk.jmh.annotations.*;
+
+import static com.beijunyi.parallelgit.benchmarks.BenchmarkRepositories.*;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CacheUtilsBenchmark {
+
+  @Param({MEMORY, FILE})
+  public String repository;
+
+  @Param({"1000", "10000"})
+  public int files;
+
+  private Repository repo;
+  private RevCommit commit;
+  private DirCache cache;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUpRepository() throws IOException {
+    repo = newRepository(repository);
+    commit = commitFiles(MASTER, files, repo);
+    cache = CacheUtils.forRevision(commit, repo);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteRepository() throws IOException {
+    BenchmarkRepositories.deleteRepository(repo);
+  }
+
+  @Benchmark
+  public DirCache forRevision() throws IOException {
+    return CacheUtils.forRevision(commit, repo);
+  }
+
+  @Benchmark
+  public DirCacheEntry getEntry() {
+    return CacheUtils.getEntry(pathOf(next++ % files), cache);
+  }
+
+  @Benchmark
+  public int findEntry() {
+    return CacheUtils.findEntry(pathOf(next++ % files), cache);
+  }
+
+}
@@ -0,0 +1,68 @@
+package com.beijunyi.parallelgit.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import org.eclipse.jgit.lib.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import static com.beijunyi.parallelgit.benchmarks.BenchmarkRepositories.*;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilesBenchmark {
+
+  @Param({MEMORY, FILE})
+  public String repository;
+
+  @Param({"1000"})
+  public int files;
+
+  @Param({"1024", "1048576"})
+  public int fileSize;
+
+  private Repository repo;
+  private GitFileSystem gfs;
+  private byte[] data;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUpRepository() throws IOException {
+    repo = newRepository(repository);
+    commitFiles(MASTER, files, repo);
+    data = new byte[fileSize];
+  }
+
+  @Setup(Level.Iteration)
+  public void openFileSystem() throws IOException {
+    gfs = BenchmarkRepositories.openFileSystem(MASTER, repo);
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeFileSystem() throws IOException {
+    gfs.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteRepository() throws IOException {
+    BenchmarkRepositories.deleteRepository(repo);
+  }
+
+  @Benchmark
+  public void write() throws IOException {
+    Files.write(gfs.getPath(pathOf(next++ % files)), data);
+  }
+
+  @Benchmark
+  public byte[] readAllBytes() throws IOException {
+    return Files.readAllBytes(gfs.getPath(pathOf(next++ % files)));
+  }
+
+}
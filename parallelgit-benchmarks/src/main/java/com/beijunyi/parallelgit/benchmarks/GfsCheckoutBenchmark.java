@@ -0,0 +1,70 @@
+package com.beijunyi.parallelgit.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.beijunyi.parallelgit.filesystem.Gfs;
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import com.beijunyi.parallelgit.filesystem.commands.GfsCheckout;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.openjdk.jmh.annotations.*;
+
+import static com.beijunyi.parallelgit.benchmarks.BenchmarkRepositories.*;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GfsCheckoutBenchmark {
+
+  private static final String LEFT = "left";
+  private static final String RIGHT = "right";
+
+  @Param({MEMORY, FILE})
+  public String repository;
+
+  @Param({"1000", "10000"})
+  public int files;
+
+  @Param({"2", "10"})
+  public int changeStride;
+
+  private Repository repo;
+  private GitFileSystem gfs;
+  private String current;
+
+  @Setup(Level.Trial)
+  public void setUpRepository() throws IOException {
+    repo = newRepository(repository);
+    RevCommit base = commitFiles(MASTER, files, repo);
+    commitChanges(LEFT, base, files, changeStride, 0, repo);
+    commitChanges(RIGHT, base, files, changeStride, 1, repo);
+  }
+
+  @Setup(Level.Iteration)
+  public void openFileSystem() throws IOException {
+    gfs = BenchmarkRepositories.openFileSystem(LEFT, repo);
+    current = LEFT;
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeFileSystem() throws IOException {
+    gfs.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteRepository() throws IOException {
+    BenchmarkRepositories.deleteRepository(repo);
+  }
+
+  @Benchmark
+  public GfsCheckout.Result checkout() throws IOException {
+    current = LEFT.equals(current) ? RIGHT : LEFT;
+    return Gfs.checkout(gfs).target(current).execute();
+  }
+
+}
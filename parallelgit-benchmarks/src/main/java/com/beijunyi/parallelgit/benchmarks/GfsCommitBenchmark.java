@@ -0,0 +1,78 @@
+package com.beijunyi.parallelgit.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import com.beijunyi.parallelgit.filesystem.Gfs;
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import com.beijunyi.parallelgit.filesystem.commands.GfsCommit;
+import com.beijunyi.parallelgit.utils.BranchUtils;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.openjdk.jmh.annotations.*;
+
+import static com.beijunyi.parallelgit.benchmarks.BenchmarkRepositories.*;
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GfsCommitBenchmark {
+
+  @Param({MEMORY, FILE})
+  public String repository;
+
+  @Param({"10000"})
+  public int files;
+
+  @Param({"10", "100", "1000"})
+  public int changedFiles;
+
+  @Param({"1", "4"})
+  public int flushParallelism;
+
+  @Param({"false", "true"})
+  public boolean packInserter;
+
+  private Repository repo;
+  private RevCommit base;
+  private GitFileSystem gfs;
+  private int version;
+
+  @Setup(Level.Trial)
+  public void setUpRepository() throws IOException {
+    repo = newRepository(repository);
+    base = commitFiles(MASTER, files, repo);
+  }
+
+  @Setup(Level.Invocation)
+  public void writeChanges() throws IOException {
+    BranchUtils.resetBranchHead(MASTER, base, repo);
+    gfs = openFileSystem(repo(repo).branch(MASTER).flushParallelism(flushParallelism).packInserter(packInserter));
+    String content = "version " + version++;
+    int stride = Math.max(1, files / changedFiles);
+    for(int i = 0; i < changedFiles; i++)
+      Files.write(gfs.getPath(pathOf(i * stride % files)), contentOf(i, content));
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeFileSystem() throws IOException {
+    gfs.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteRepository() throws IOException {
+    BenchmarkRepositories.deleteRepository(repo);
+  }
+
+  @Benchmark
+  public GfsCommit.Result commit() throws IOException {
+    return Gfs.commit(gfs).execute();
+  }
+
+}
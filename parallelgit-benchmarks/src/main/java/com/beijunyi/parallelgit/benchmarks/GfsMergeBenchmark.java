@@ -0,0 +1,70 @@
+package com.beijunyi.parallelgit.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.beijunyi.parallelgit.filesystem.Gfs;
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import com.beijunyi.parallelgit.filesystem.commands.GfsMerge;
+import com.beijunyi.parallelgit.utils.BranchUtils;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.openjdk.jmh.annotations.*;
+
+import static com.beijunyi.parallelgit.benchmarks.BenchmarkRepositories.*;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GfsMergeBenchmark {
+
+  private static final String OURS = "ours";
+  private static final String THEIRS = "theirs";
+
+  @Param({MEMORY, FILE})
+  public String repository;
+
+  @Param({"1000", "10000"})
+  public int files;
+
+  @Param({"4", "40"})
+  public int changeStride;
+
+  private Repository repo;
+  private RevCommit ours;
+  private GitFileSystem gfs;
+
+  @Setup(Level.Trial)
+  public void setUpRepository() throws IOException {
+    repo = newRepository(repository);
+    RevCommit base = commitFiles(MASTER, files, repo);
+    ours = commitChanges(OURS, base, files, changeStride, 0, repo);
+    commitChanges(THEIRS, base, files, changeStride, 1, repo);
+  }
+
+  @Setup(Level.Invocation)
+  public void openFileSystem() throws IOException {
+    BranchUtils.resetBranchHead(OURS, ours, repo);
+    gfs = BenchmarkRepositories.openFileSystem(OURS, repo);
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeFileSystem() throws IOException {
+    gfs.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteRepository() throws IOException {
+    BenchmarkRepositories.deleteRepository(repo);
+  }
+
+  @Benchmark
+  public GfsMerge.Result threeWayMerge() throws IOException {
+    return Gfs.merge(gfs).source(THEIRS).execute();
+  }
+
+}
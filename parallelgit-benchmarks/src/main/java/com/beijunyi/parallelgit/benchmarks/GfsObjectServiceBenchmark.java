@@ -0,0 +1,75 @@
+package com.beijunyi.parallelgit.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.beijunyi.parallelgit.filesystem.GfsObjectCache;
+import com.beijunyi.parallelgit.filesystem.GfsObjectService;
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import com.beijunyi.parallelgit.utils.TreeUtils;
+import com.beijunyi.parallelgit.utils.io.BlobSnapshot;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import static com.beijunyi.parallelgit.benchmarks.BenchmarkRepositories.*;
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(Threads.MAX)
+@Fork(1)
+public class GfsObjectServiceBenchmark {
+
+  @Param({MEMORY, FILE})
+  public String repository;
+
+  @Param({"1000"})
+  public int files;
+
+  @Param({"1", "4", "16"})
+  public int readerPoolSize;
+
+  @Param({"false", "true"})
+  public boolean objectCache;
+
+  private Repository repo;
+  private GitFileSystem gfs;
+  private GfsObjectService objService;
+  private ObjectId[] blobs;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    repo = newRepository(repository);
+    ObjectId tree = commitFiles(MASTER, files, repo).getTree();
+    blobs = new ObjectId[files];
+    for(int i = 0; i < files; i++)
+      blobs[i] = TreeUtils.getObjectId(pathOf(i), tree, repo);
+    gfs = openFileSystem(repo(repo).branch(MASTER)
+                           .readerPoolSize(readerPoolSize)
+                           .objectCache(objectCache ? new GfsObjectCache() : null));
+    objService = gfs.getObjectService();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    gfs.close();
+    deleteRepository(repo);
+  }
+
+  @Benchmark
+  public BlobSnapshot readBlob() throws IOException {
+    return objService.readBlob(blobs[ThreadLocalRandom.current().nextInt(blobs.length)]);
+  }
+
+  @Benchmark
+  public long getBlobSize() throws IOException {
+    return objService.getBlobSize(blobs[ThreadLocalRandom.current().nextInt(blobs.length)]);
+  }
+
+}
@@ -0,0 +1,66 @@
+package com.beijunyi.parallelgit.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import org.eclipse.jgit.lib.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import static com.beijunyi.parallelgit.benchmarks.BenchmarkRepositories.*;
+import static java.nio.file.StandardOpenOption.*;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GfsSeekableByteChannelBenchmark {
+
+  @Param({"1024", "104857600"})
+  public int fileSize;
+
+  @Param({"4096"})
+  public int chunkSize;
+
+  private Repository repo;
+  private GitFileSystem gfs;
+  private byte[] chunk;
+
+  @Setup(Level.Trial)
+  public void setUpRepository() throws IOException {
+    repo = newRepository(MEMORY);
+    commitFiles(MASTER, 1, repo);
+    chunk = new byte[chunkSize];
+  }
+
+  @Setup(Level.Iteration)
+  public void openFileSystem() throws IOException {
+    gfs = BenchmarkRepositories.openFileSystem(MASTER, repo);
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeFileSystem() throws IOException {
+    gfs.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteRepository() throws IOException {
+    BenchmarkRepositories.deleteRepository(repo);
+  }
+
+  @Benchmark
+  public long writeInChunks() throws IOException {
+    try(SeekableByteChannel channel = Files.newByteChannel(gfs.getPath(pathOf(0)), WRITE, TRUNCATE_EXISTING)) {
+      for(int written = 0; written < fileSize; written += chunkSize)
+        channel.write(ByteBuffer.wrap(chunk, 0, Math.min(chunkSize, fileSize - written)));
+      return channel.size();
+    }
+  }
+
+}
@@ -0,0 +1,63 @@
+package com.beijunyi.parallelgit.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.beijunyi.parallelgit.utils.TreeUtils;
+import com.beijunyi.parallelgit.utils.io.BlobSnapshot;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import static com.beijunyi.parallelgit.benchmarks.BenchmarkRepositories.*;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TreeUtilsBenchmark {
+
+  @Param({MEMORY, FILE})
+  public String repository;
+
+  @Param({"1000", "10000"})
+  public int files;
+
+  private Repository repo;
+  private ObjectReader reader;
+  private ObjectId tree;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUpRepository() throws IOException {
+    repo = newRepository(repository);
+    tree = commitFiles(MASTER, files, repo).getTree();
+    reader = repo.newObjectReader();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteRepository() throws IOException {
+    reader.close();
+    BenchmarkRepositories.deleteRepository(repo);
+  }
+
+  @Benchmark
+  public boolean exists() throws IOException {
+    return TreeUtils.exists(pathOf(next++ % files), tree, reader);
+  }
+
+  @Benchmark
+  public ObjectId getObjectId() throws IOException {
+    return TreeUtils.getObjectId(pathOf(next++ % files), tree, reader);
+  }
+
+  @Benchmark
+  public BlobSnapshot readFile() throws IOException {
+    return TreeUtils.readFile(pathOf(next++ % files), tree, reader);
+  }
+
+}
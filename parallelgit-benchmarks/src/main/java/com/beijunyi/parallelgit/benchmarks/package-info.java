@@ -0,0 +1,4 @@
+@ParametersAreNonnullByDefault
+package com.beijunyi.parallelgit.benchmarks;
+
+import javax.annotation.ParametersAreNonnullByDefault;
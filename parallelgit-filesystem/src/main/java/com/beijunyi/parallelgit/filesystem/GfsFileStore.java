@@ -17,9 +17,15 @@ import static com.beijunyi.parallelgit.filesystem.io.RootNode.*;
 public class GfsFileStore extends FileStore {
 
   private final RootNode root;
+  private final GfsObjectService objService;
 
   public GfsFileStore(@Nullable RevCommit commit, GfsObjectService objService) throws IOException {
-    root = commit != null ? fromCommit(commit, objService) : newRoot(objService);
+    this(commit != null ? fromCommit(commit, objService) : newRoot(objService), objService);
+  }
+
+  public GfsFileStore(RootNode root, GfsObjectService objService) {
+    this.root = root;
+    this.objService = objService;
   }
 
   @Nonnull
@@ -41,17 +47,21 @@ public class GfsFileStore extends FileStore {
 
   @Override
   public long getTotalSpace() {
-    return 0;
+    return objService.getLoadedBytesLimit();
   }
 
   @Override
   public long getUsableSpace() {
-    return 0;
+    return Math.max(0, objService.getLoadedBytesLimit() - objService.getLoadedBytes());
   }
 
   @Override
   public long getUnallocatedSpace() {
-    return 0;
+    return getUsableSpace();
+  }
+
+  public long getLoadedBytes() {
+    return objService.getLoadedBytes();
   }
 
   @Override
@@ -88,6 +98,8 @@ public class GfsFileStore extends FileStore {
       return getUsableSpace();
     if(attribute.equals("unallocatedSpace"))
       return getUnallocatedSpace();
+    if(attribute.equals("loadedBytes"))
+      return getLoadedBytes();
     throw new UnsupportedOperationException("'" + attribute + "' not recognized");
   }
 
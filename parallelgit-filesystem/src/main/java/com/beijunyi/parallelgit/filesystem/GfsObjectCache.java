@@ -0,0 +1,226 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.beijunyi.parallelgit.utils.io.BlobSnapshot;
+import com.beijunyi.parallelgit.utils.io.ObjectSnapshot;
+import com.beijunyi.parallelgit.utils.io.TreeSnapshot;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+public class GfsObjectCache {
+
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  public static final int DEFAULT_MAX_BLOB_SIZE = 64 * 1024;
+
+  private static final int SEGMENTS = 16;
+  private static final int ENTRY_OVERHEAD = 96;
+  private static final int TREE_ENTRY_OVERHEAD = 112;
+
+  private final long maxBytes;
+  private final int maxBlobSize;
+  private final Segment[] segments;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public GfsObjectCache(long maxBytes, int maxBlobSize) {
+    if(maxBytes < 0 || maxBlobSize < 0)
+      throw new IllegalArgumentException("Cache limits must not be negative");
+    this.maxBytes = maxBytes;
+    this.maxBlobSize = maxBlobSize;
+    segments = new Segment[SEGMENTS];
+    for(int i = 0; i < SEGMENTS; i++)
+      segments[i] = new Segment(maxBytes / SEGMENTS);
+  }
+
+  public GfsObjectCache() {
+    this(DEFAULT_MAX_BYTES, DEFAULT_MAX_BLOB_SIZE);
+  }
+
+  @Nullable
+  public TreeSnapshot getTree(AnyObjectId id) {
+    return get(id, TreeSnapshot.class);
+  }
+
+  @Nullable
+  public BlobSnapshot getBlob(AnyObjectId id) {
+    return get(id, BlobSnapshot.class);
+  }
+
+  @Nullable
+  public byte[] getRawTree(AnyObjectId id) {
+    return get(new RawTreeKey(id), byte[].class);
+  }
+
+  public void put(ObjectSnapshot snapshot) {
+    long weight = weigh(snapshot);
+    if(weight < 0)
+      return;
+    ObjectId key = snapshot.getId().copy();
+    segmentFor(key).put(key, snapshot, weight);
+  }
+
+  public void putRawTree(AnyObjectId id, byte[] bytes) {
+    RawTreeKey key = new RawTreeKey(id);
+    segmentFor(key).put(key, bytes, bytes.length + ENTRY_OVERHEAD);
+  }
+
+  public void invalidateAll() {
+    for(Segment segment : segments)
+      segment.clear();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public int getMaxBlobSize() {
+    return maxBlobSize;
+  }
+
+  public long getSize() {
+    long ret = 0;
+    for(Segment segment : segments)
+      ret += segment.getWeight();
+    return ret;
+  }
+
+  public int getEntryCount() {
+    int ret = 0;
+    for(Segment segment : segments)
+      ret += segment.getCount();
+    return ret;
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  @Nullable
+  private <S> S get(Object key, Class<S> type) {
+    Object ret = segmentFor(key).get(key);
+    if(type.isInstance(ret)) {
+      hits.incrementAndGet();
+      return type.cast(ret);
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  @Nonnull
+  private Segment segmentFor(Object key) {
+    return segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+  }
+
+  private long weigh(ObjectSnapshot snapshot) {
+    if(snapshot instanceof BlobSnapshot) {
+      int size = ((BlobSnapshot) snapshot).getData().length;
+      return size <= maxBlobSize ? size + ENTRY_OVERHEAD : -1;
+    }
+    if(snapshot instanceof TreeSnapshot) {
+      long ret = ENTRY_OVERHEAD;
+      for(String name : ((TreeSnapshot) snapshot).getData().keySet())
+        ret += name.length() * 2 + TREE_ENTRY_OVERHEAD;
+      return ret;
+    }
+    return -1;
+  }
+
+  private class Segment {
+
+    private final long capacity;
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+
+    private Segment(long capacity) {
+      this.capacity = capacity;
+    }
+
+    @Nullable
+    private synchronized Object get(Object key) {
+      Entry entry = entries.get(key);
+      return entry != null ? entry.value : null;
+    }
+
+    private synchronized void put(Object key, Object value, long size) {
+      if(size > capacity)
+        return;
+      Entry previous = entries.put(key, new Entry(value, size));
+      if(previous != null)
+        weight -= previous.weight;
+      weight += size;
+      evict();
+    }
+
+    private synchronized void clear() {
+      entries.clear();
+      weight = 0;
+    }
+
+    private synchronized long getWeight() {
+      return weight;
+    }
+
+    private synchronized int getCount() {
+      return entries.size();
+    }
+
+    private void evict() {
+      Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+      while(weight > capacity && it.hasNext()) {
+        weight -= it.next().getValue().weight;
+        it.remove();
+        evictions.incrementAndGet();
+      }
+    }
+
+  }
+
+  private static class Entry {
+
+    private final Object value;
+    private final long weight;
+
+    private Entry(Object value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+
+  }
+
+  private static class RawTreeKey {
+
+    private final ObjectId id;
+
+    private RawTreeKey(AnyObjectId id) {
+      this.id = id.copy();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      return obj instanceof RawTreeKey && id.equals(((RawTreeKey) obj).id);
+    }
+
+    @Override
+    public int hashCode() {
+      return ~id.hashCode();
+    }
+
+  }
+
+}
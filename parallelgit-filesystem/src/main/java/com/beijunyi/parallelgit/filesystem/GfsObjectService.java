@@ -2,27 +2,64 @@ package com.beijunyi.parallelgit.filesystem;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.ClosedFileSystemException;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import com.beijunyi.parallelgit.filesystem.io.NodeDataBudget;
+import com.beijunyi.parallelgit.filesystem.io.SpilledFiles;
+import com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration;
 import com.beijunyi.parallelgit.utils.BlobUtils;
 import com.beijunyi.parallelgit.utils.io.*;
+import org.eclipse.jgit.internal.storage.pack.PackWriter;
 import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.PackParser;
+import org.eclipse.jgit.util.TemporaryBuffer;
 
 import static org.eclipse.jgit.lib.Constants.*;
+import static org.eclipse.jgit.lib.FileMode.GITLINK;
 
 public class GfsObjectService implements Closeable {
 
+  private static final int PACK_TRANSFER_THRESHOLD = 64;
+
   private final Repository repo;
-  private final ObjectReader reader;
-  private final ObjectInserter inserter;
+  private final Semaphore readerPermits;
+  private final Queue<ObjectReader> idleReaders = new ConcurrentLinkedQueue<>();
+  private final Queue<ObjectInserter> inserters = new ConcurrentLinkedQueue<>();
+  private final Queue<ObjectInserter> idleInserters = new ConcurrentLinkedQueue<>();
+  private final ForkJoinPool flushPool;
+  private final boolean packInserter;
+  private final boolean lazyDirectories;
+  private final GfsObjectCache cache;
+  private final long largeFileThreshold;
+  private final long dirtyBytesLimit;
+  private final AtomicLong dirtyBytes = new AtomicLong();
+  private final NodeDataBudget dataBudget;
+  private final SpilledFiles spilledFiles;
 
   private volatile boolean closed = false;
 
-  GfsObjectService(final Repository repo) {
-    this.repo = repo;
-    this.reader = repo.newObjectReader();
-    this.inserter = repo.newObjectInserter();
+  GfsObjectService(GfsConfiguration cfg) {
+    this.repo = cfg.repository();
+    this.readerPermits = new Semaphore(cfg.readerPoolSize());
+    this.flushPool = cfg.flushParallelism() > 1 ? new ForkJoinPool(cfg.flushParallelism()) : null;
+    this.packInserter = cfg.packInserter();
+    this.lazyDirectories = cfg.lazyDirectories();
+    this.cache = cfg.objectCache();
+    this.largeFileThreshold = cfg.largeFileThreshold();
+    this.dirtyBytesLimit = cfg.dirtyBytesLimit();
+    this.dataBudget = new NodeDataBudget(cfg.loadedBytesLimit());
+    this.spilledFiles = new SpilledFiles(cfg.dirtyBytesLimit());
   }
 
   @Nonnull
@@ -30,18 +67,78 @@ public class GfsObjectService implements Closeable {
     return repo;
   }
 
+  @Nullable
+  public GfsObjectCache getObjectCache() {
+    return cache;
+  }
+
+  public long getLargeFileThreshold() {
+    return largeFileThreshold;
+  }
+
+  @Nullable
+  public ForkJoinPool getFlushPool() {
+    return flushPool;
+  }
+
+  public boolean isLazyDirectories() {
+    return lazyDirectories;
+  }
+
+  @Nonnull
+  public NodeDataBudget getDataBudget() {
+    return dataBudget;
+  }
+
+  public long getLoadedBytes() {
+    return dataBudget.getLoadedBytes();
+  }
+
+  public long getLoadedBytesLimit() {
+    return dataBudget.getLimit();
+  }
+
+  @Nonnull
+  public SpilledFiles getSpilledFiles() {
+    return spilledFiles;
+  }
+
+  public long getDirtyBytes() {
+    return dirtyBytes.get();
+  }
+
+  public boolean reserveDirtyBytes(long size) {
+    long current;
+    do {
+      current = dirtyBytes.get();
+      if(current + size > dirtyBytesLimit)
+        return false;
+    } while(!dirtyBytes.compareAndSet(current, current + size));
+    return true;
+  }
+
+  public void releaseDirtyBytes(long size) {
+    dirtyBytes.addAndGet(-size);
+  }
+
   @Nonnull
   public ObjectLoader open(AnyObjectId objectId) throws IOException {
     checkClosed();
-    synchronized(reader) {
+    ObjectReader reader = acquireReader();
+    try {
       return reader.open(objectId);
+    } finally {
+      releaseReader(reader);
     }
   }
 
   public boolean hasObject(AnyObjectId objectId) throws IOException {
     checkClosed();
-    synchronized(reader) {
+    ObjectReader reader = acquireReader();
+    try {
       return reader.has(objectId);
+    } finally {
+      releaseReader(reader);
     }
   }
 
@@ -57,46 +154,143 @@ public class GfsObjectService implements Closeable {
   @Nonnull
   public BlobSnapshot readBlob(ObjectId id) throws IOException {
     checkClosed();
-    synchronized(reader) {
-      return BlobUtils.readBlob(id, reader);
+    BlobSnapshot ret = cache != null ? cache.getBlob(id) : null;
+    if(ret != null)
+      return ret;
+    ObjectReader reader = acquireReader();
+    try {
+      ret = BlobUtils.readBlob(id, reader);
+    } finally {
+      releaseReader(reader);
     }
+    if(cache != null)
+      cache.put(ret);
+    return ret;
   }
 
   public long getBlobSize(ObjectId id) throws IOException {
     checkClosed();
-    synchronized(reader) {
+    BlobSnapshot cached = cache != null ? cache.getBlob(id) : null;
+    if(cached != null)
+      return cached.getData().length;
+    ObjectReader reader = acquireReader();
+    try {
       return BlobUtils.getBlobSize(id, reader);
+    } finally {
+      releaseReader(reader);
+    }
+  }
+
+  @Nonnull
+  public Map<ObjectId, Long> getBlobSizes(Collection<? extends ObjectId> ids) throws IOException {
+    checkClosed();
+    Map<ObjectId, Long> ret = new HashMap<>();
+    List<ObjectId> pending = new ArrayList<>(ids.size());
+    for(ObjectId id : ids) {
+      BlobSnapshot cached = cache != null ? cache.getBlob(id) : null;
+      if(cached != null)
+        ret.put(id, (long) cached.getData().length);
+      else
+        pending.add(id);
     }
+    if(pending.isEmpty())
+      return ret;
+    ObjectReader reader = acquireReader();
+    try {
+      AsyncObjectSizeQueue<ObjectId> queue = reader.getObjectSize(pending, true);
+      try {
+        while(queue.next())
+          ret.put(queue.getCurrent(), queue.getSize());
+      } finally {
+        queue.release();
+      }
+    } finally {
+      releaseReader(reader);
+    }
+    return ret;
   }
 
   @Nonnull
   public TreeSnapshot readTree(ObjectId id) throws IOException {
     checkClosed();
-    synchronized(reader) {
-      return TreeSnapshot.load(id, reader);
+    TreeSnapshot ret = cache != null ? cache.getTree(id) : null;
+    if(ret != null)
+      return ret;
+    ObjectReader reader = acquireReader();
+    try {
+      ret = TreeSnapshot.load(id, reader);
+    } finally {
+      releaseReader(reader);
+    }
+    if(cache != null)
+      cache.put(ret);
+    return ret;
+  }
+
+  @Nonnull
+  public byte[] readRawTree(ObjectId id) throws IOException {
+    checkClosed();
+    byte[] ret = cache != null ? cache.getRawTree(id) : null;
+    if(ret != null)
+      return ret;
+    ObjectReader reader = acquireReader();
+    try {
+      ret = reader.open(id, OBJ_TREE).getCachedBytes(Integer.MAX_VALUE);
+    } finally {
+      releaseReader(reader);
     }
+    if(cache != null)
+      cache.putRawTree(id, ret);
+    return ret;
   }
 
   @Nonnull
   public ObjectId write(ObjectSnapshot snapshot) throws IOException {
-    return snapshot.save(inserter);
+    ObjectInserter inserter = acquireInserter();
+    try {
+      synchronized(inserter) {
+        return snapshot.save(inserter);
+      }
+    } finally {
+      idleInserters.offer(inserter);
+    }
   }
 
-  public void pullObject(ObjectId id, boolean flush, GfsObjectService sourceObjService) throws IOException {
-    if(!hasObject(id)) {
-      ObjectLoader loader = sourceObjService.open(id);
-      switch(loader.getType()) {
-        case OBJ_TREE:
-          pullTree(id, sourceObjService);
-          break;
-        case OBJ_BLOB:
-          pullBlob(id, sourceObjService);
-          break;
-        default:
-          throw new UnsupportedOperationException(id.toString());
+  @Nonnull
+  public ObjectId insert(int type, byte[] data) throws IOException {
+    ObjectInserter inserter = acquireInserter();
+    try {
+      synchronized(inserter) {
+        return inserter.insert(type, data);
+      }
+    } finally {
+      idleInserters.offer(inserter);
+    }
+  }
+
+  @Nonnull
+  public ObjectId insertBlob(long size, InputStream in) throws IOException {
+    ObjectInserter inserter = acquireInserter();
+    try {
+      synchronized(inserter) {
+        return inserter.insert(OBJ_BLOB, size, in);
       }
-      if(flush) flush();
+    } finally {
+      idleInserters.offer(inserter);
+    }
+  }
+
+  public void pullObject(ObjectId id, boolean flush, GfsObjectService sourceObjService) throws IOException {
+    Map<ObjectId, Integer> missing = findMissingObjects(id, sourceObjService);
+    if(missing.isEmpty())
+      return;
+    if(missing.size() < PACK_TRANSFER_THRESHOLD) {
+      for(Map.Entry<ObjectId, Integer> object : missing.entrySet())
+        copyObject(object.getKey(), sourceObjService);
+    } else {
+      transferPack(missing, sourceObjService);
     }
+    if(flush) flush();
   }
 
   public void pullObject(ObjectId id, GfsObjectService sourceObjService) throws IOException {
@@ -105,30 +299,140 @@ public class GfsObjectService implements Closeable {
 
   public void flush() throws IOException {
     checkClosed();
-    synchronized(inserter) {
-      inserter.flush();
+    SpilledFiles.Batch spills = spilledFiles.drain();
+    for(ObjectInserter inserter : inserters) {
+      synchronized(inserter) {
+        inserter.flush();
+      }
     }
+    spills.release();
   }
 
   @Override
   public synchronized void close() {
     if(!closed) {
       closed = true;
-      reader.close();
-      inserter.close();
+      closeIdleReaders();
+      if(flushPool != null)
+        flushPool.shutdown();
+      for(ObjectInserter inserter : inserters)
+        inserter.close();
       repo.close();
     }
   }
 
-  private void pullTree(ObjectId id, GfsObjectService sourceObjService) throws IOException {
-    TreeSnapshot tree = sourceObjService.readTree(id);
-    for(GitFileEntry entry : tree.getData().values())
-      pullObject(entry.getId(), false, sourceObjService);
-    write(tree);
+  @Nonnull
+  private Map<ObjectId, Integer> findMissingObjects(ObjectId id, GfsObjectService sourceObjService) throws IOException {
+    Map<ObjectId, Integer> ret = new LinkedHashMap<>();
+    if(hasObject(id))
+      return ret;
+    Deque<ObjectId> trees = new ArrayDeque<>();
+    int type = sourceObjService.open(id).getType();
+    switch(type) {
+      case OBJ_TREE:
+        trees.push(id);
+        break;
+      case OBJ_BLOB:
+        ret.put(id, OBJ_BLOB);
+        return ret;
+      default:
+        throw new UnsupportedOperationException(id.toString());
+    }
+    Set<ObjectId> visited = new HashSet<>();
+    while(!trees.isEmpty()) {
+      ObjectId tree = trees.pop();
+      ret.put(tree, OBJ_TREE);
+      for(GitFileEntry entry : sourceObjService.readTree(tree).getData().values()) {
+        ObjectId child = entry.getId();
+        if(GITLINK.equals(entry.getMode()) || !visited.add(child) || hasObject(child))
+          continue;
+        if(entry.isSubtree())
+          trees.push(child);
+        else
+          ret.put(child, OBJ_BLOB);
+      }
+    }
+    return ret;
+  }
+
+  private void copyObject(ObjectId id, GfsObjectService sourceObjService) throws IOException {
+    ObjectLoader loader = sourceObjService.open(id);
+    ObjectInserter inserter = acquireInserter();
+    try(ObjectStream in = loader.openStream()) {
+      synchronized(inserter) {
+        inserter.insert(loader.getType(), loader.getSize(), in);
+      }
+    } finally {
+      idleInserters.offer(inserter);
+    }
+  }
+
+  private void transferPack(Map<ObjectId, Integer> objects, GfsObjectService sourceObjService) throws IOException {
+    TemporaryBuffer.LocalFile buffer = new TemporaryBuffer.LocalFile(null);
+    try {
+      sourceObjService.writePack(objects, buffer);
+      ObjectInserter inserter = acquireInserter();
+      try(InputStream in = buffer.openInputStream()) {
+        synchronized(inserter) {
+          PackParser parser = inserter.newPackParser(in);
+          parser.setAllowThin(false);
+          parser.parse(NullProgressMonitor.INSTANCE);
+        }
+      } finally {
+        idleInserters.offer(inserter);
+      }
+    } finally {
+      buffer.destroy();
+    }
+  }
+
+  private void writePack(Map<ObjectId, Integer> objects, OutputStream out) throws IOException {
+    checkClosed();
+    ObjectReader reader = acquireReader();
+    try(PackWriter writer = new PackWriter(reader); RevWalk rw = new RevWalk(reader)) {
+      List<RevObject> revObjects = new ArrayList<>(objects.size());
+      for(Map.Entry<ObjectId, Integer> object : objects.entrySet())
+        revObjects.add(object.getValue() == OBJ_TREE ? rw.lookupTree(object.getKey()) : rw.lookupBlob(object.getKey()));
+      writer.setUseBitmaps(false);
+      writer.preparePack(revObjects.iterator());
+      writer.writePack(NullProgressMonitor.INSTANCE, NullProgressMonitor.INSTANCE, out);
+      out.close();
+    } finally {
+      releaseReader(reader);
+    }
+  }
+
+  @Nonnull
+  private ObjectReader acquireReader() {
+    readerPermits.acquireUninterruptibly();
+    ObjectReader ret = idleReaders.poll();
+    return ret != null ? ret : repo.newObjectReader();
+  }
+
+  @Nonnull
+  private ObjectInserter acquireInserter() {
+    ObjectInserter ret = idleInserters.poll();
+    if(ret == null) {
+      ret = packInserter ? PackObjectInserter.forRepository(repo) : repo.newObjectInserter();
+      inserters.offer(ret);
+    }
+    return ret;
   }
 
-  private void pullBlob(ObjectId id, GfsObjectService sourceObjService) throws IOException {
-    write(sourceObjService.readBlob(id));
+  private void releaseReader(ObjectReader reader) {
+    if(closed)
+      reader.close();
+    else {
+      idleReaders.offer(reader);
+      if(closed) closeIdleReaders();
+    }
+    readerPermits.release();
+  }
+
+  private void closeIdleReaders() {
+    ObjectReader reader;
+    while((reader = idleReaders.poll()) != null)
+      reader.close();
   }
 
   private void checkClosed() {
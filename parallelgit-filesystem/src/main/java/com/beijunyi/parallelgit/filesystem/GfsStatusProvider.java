@@ -3,6 +3,7 @@ package com.beijunyi.parallelgit.filesystem;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.ClosedFileSystemException;
+import java.util.SortedMap;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -11,6 +12,7 @@ import com.beijunyi.parallelgit.filesystem.exceptions.NoBranchException;
 import com.beijunyi.parallelgit.filesystem.exceptions.NoHeadCommitException;
 import com.beijunyi.parallelgit.filesystem.merge.MergeNote;
 import com.beijunyi.parallelgit.utils.RefUtils;
+import com.beijunyi.parallelgit.utils.io.GitFileEntry;
 import org.eclipse.jgit.revwalk.RevCommit;
 
 import static org.eclipse.jgit.lib.Constants.R_HEADS;
@@ -33,8 +35,26 @@ public class GfsStatusProvider implements AutoCloseable {
     this.branch = branch;
   }
 
+  public GfsStatusProvider(GfsFileStore fileStore, GfsStatusProvider source) {
+    this.fileStore = fileStore;
+    source.lock.lock();
+    try {
+      this.branch = source.branch;
+      this.commit = source.commit;
+      this.mergeNote = source.mergeNote;
+    } finally {
+      source.lock.unlock();
+    }
+  }
+
   public boolean isDirty() throws IOException {
-    return fileStore.getRoot().isModified();
+    return fileStore.getRoot().isDirty();
+  }
+
+  @Nonnull
+  public SortedMap<String, GitFileEntry> changes() throws IOException {
+    checkClosed();
+    return fileStore.getRoot().getChanges();
   }
 
   @Nonnull
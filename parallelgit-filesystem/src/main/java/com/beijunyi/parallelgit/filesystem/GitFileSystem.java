@@ -27,6 +27,7 @@ public class GitFileSystem extends FileSystem {
   public static final Set<String> SUPPORTED_VIEWS = unmodifiableSet(new HashSet<>(asList(BASIC_VIEW, POSIX_VIEW)));
 
   private final String sid;
+  private final GfsConfiguration cfg;
   private final GfsObjectService objService;
   private final GfsFileStore fileStore;
   private final GfsStatusProvider statusProvider;
@@ -35,7 +36,8 @@ public class GitFileSystem extends FileSystem {
 
   public GitFileSystem(GfsConfiguration cfg, String sid) throws IOException {
     this.sid = sid;
-    objService = new GfsObjectService(cfg.repository());
+    this.cfg = cfg;
+    objService = new GfsObjectService(cfg);
     RevCommit commit = cfg.commit();
     String branch = cfg.branch();
     if(branch == null && commit == null)
@@ -44,6 +46,20 @@ public class GitFileSystem extends FileSystem {
     statusProvider = new GfsStatusProvider(fileStore, branch, commit);
   }
 
+  GitFileSystem(GitFileSystem source, String sid) throws IOException {
+    this.sid = sid;
+    this.cfg = source.cfg;
+    source.getRepository().incrementOpen();
+    objService = new GfsObjectService(cfg);
+    try {
+      fileStore = new GfsFileStore(source.fileStore.getRoot().fork(objService), objService);
+    } catch(IOException | RuntimeException e) {
+      objService.close();
+      throw e;
+    }
+    statusProvider = new GfsStatusProvider(fileStore, source.statusProvider);
+  }
+
   @Nonnull
   @Override
   public GitFileSystemProvider provider() {
@@ -162,6 +178,11 @@ public class GitFileSystem extends FileSystem {
     return statusProvider;
   }
 
+  @Nonnull
+  public GitFileSystem fork() throws IOException {
+    return provider().fork(this);
+  }
+
   @Nonnull
   public ObjectId flush() throws IOException {
     RootNode root = fileStore.getRoot();
@@ -1,6 +1,8 @@
 package com.beijunyi.parallelgit.filesystem;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
@@ -61,6 +63,14 @@ public class GitFileSystemProvider extends FileSystemProvider {
     return ret;
   }
 
+  @Nonnull
+  public GitFileSystem fork(GitFileSystem source) throws IOException {
+    String sid = randomUUID().toString();
+    GitFileSystem ret = new GitFileSystem(source, sid);
+    FILE_SYSTEMS.put(sid, ret);
+    return ret;
+  }
+
   public void unregister(GitFileSystem gfs) {
     FILE_SYSTEMS.remove(gfs.getSessionId());
   }
@@ -90,6 +100,33 @@ public class GitFileSystemProvider extends FileSystemProvider {
     return gfs.getPath(file).toRealPath();
   }
 
+  @Nonnull
+  @Override
+  public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+    for(OpenOption option : options) {
+      if(option == APPEND || option == WRITE || !SUPPORTED_OPEN_OPTIONS.contains(option))
+        throw new UnsupportedOperationException(option.toString());
+    }
+    return GfsIO.newInputStream(((GitPath)path).toRealPath());
+  }
+
+  @Nonnull
+  @Override
+  public OutputStream newOutputStream(Path path, OpenOption... options) throws IOException {
+    Set<OpenOption> amended = new HashSet<>();
+    if(options.length == 0) {
+      amended.add(CREATE);
+      amended.add(TRUNCATE_EXISTING);
+    }
+    for(OpenOption option : options) {
+      if(option == READ) throw new IllegalArgumentException(option.toString());
+      if(!SUPPORTED_OPEN_OPTIONS.contains(option)) throw new UnsupportedOperationException(option.toString());
+      amended.add(option);
+    }
+    amended.add(WRITE);
+    return GfsIO.newOutputStream(((GitPath)path).toRealPath(), amended);
+  }
+
   @Nonnull
   @Override
   public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException, UnsupportedOperationException {
@@ -13,6 +13,7 @@ import java.util.NoSuchElementException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import com.beijunyi.parallelgit.filesystem.io.Node;
 import com.beijunyi.parallelgit.filesystem.utils.GfsUriBuilder;
 
 import static org.eclipse.jgit.lib.Constants.CHARSET;
@@ -24,13 +25,19 @@ public class GitPath implements Path {
 
   private final GitFileSystem gfs;
   private final byte[] path;
+  private final Node node;
 
   private volatile int[] offsets;
   private volatile String stringValue;
 
-  GitPath(GitFileSystem gfs, byte[] path) {
+  GitPath(GitFileSystem gfs, byte[] path, @Nullable Node node) {
     this.gfs = gfs;
     this.path = path;
+    this.node = node;
+  }
+
+  GitPath(GitFileSystem gfs, byte[] path) {
+    this(gfs, path, null);
   }
 
   GitPath(GitFileSystem gfs, String input) {
@@ -87,7 +94,7 @@ public class GitPath implements Path {
     SoftReference<CharsetEncoder> ref = encoder.get();
     CharsetEncoder ce = (ref != null) ? ref.get() : null;
     if(ce == null) {
-      ce = Charset.defaultCharset()
+      ce = CHARSET
              .newEncoder()
              .onMalformedInput(CodingErrorAction.REPORT)
              .onUnmappableCharacter(CodingErrorAction.REPORT);
@@ -133,6 +140,16 @@ public class GitPath implements Path {
     return gfs.getFileStore();
   }
 
+  @Nonnull
+  public byte[] getBytes() {
+    return path;
+  }
+
+  @Nullable
+  public Node getNode() {
+    return node;
+  }
+
   @Override
   public boolean isAbsolute() {
     return path.length > 0 && path[0] == '/';
@@ -510,6 +527,11 @@ public class GitPath implements Path {
     return new GitPath(getFileSystem(), result);
   }
 
+  @Nonnull
+  public GitPath resolveChild(String name, @Nullable Node node) {
+    return new GitPath(gfs, resolve(path, encode(name)), node);
+  }
+
   @Override
   public GitPath resolve(String pathStr) {
     return resolve(getFileSystem().getPath(pathStr));
@@ -2,42 +2,38 @@ package com.beijunyi.parallelgit.filesystem.commands;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.beijunyi.parallelgit.filesystem.GfsStatusProvider;
 import com.beijunyi.parallelgit.filesystem.GitFileSystem;
 import com.beijunyi.parallelgit.filesystem.exceptions.NoHeadCommitException;
+import com.beijunyi.parallelgit.filesystem.merge.GfsTreeMerger;
 import com.beijunyi.parallelgit.filesystem.merge.MergeConflict;
-import org.eclipse.jgit.dircache.DirCache;
-import org.eclipse.jgit.lib.AnyObjectId;
-import org.eclipse.jgit.merge.*;
+import org.eclipse.jgit.merge.MergeFormatter;
 import org.eclipse.jgit.revwalk.RevCommit;
 
 import static com.beijunyi.parallelgit.filesystem.commands.GfsApplyStash.Result.*;
 import static com.beijunyi.parallelgit.filesystem.commands.GfsApplyStash.Status.*;
-import static com.beijunyi.parallelgit.filesystem.io.GfsDefaultCheckout.checkout;
-import static com.beijunyi.parallelgit.filesystem.io.GfsTreeIterator.iterateRoot;
-import static com.beijunyi.parallelgit.filesystem.merge.GfsMergeCheckout.handleConflicts;
-import static com.beijunyi.parallelgit.filesystem.merge.MergeConflict.readConflicts;
 import static com.beijunyi.parallelgit.utils.CommitUtils.getCommit;
+import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
-import static org.eclipse.jgit.dircache.DirCache.newInCore;
 import static org.eclipse.jgit.lib.Constants.STASH;
-import static org.eclipse.jgit.merge.MergeStrategy.RECURSIVE;
 
 public class GfsApplyStash extends GfsCommand<GfsApplyStash.Result> {
 
   private static final String LAST_STASH = makeStashId(0);
 
-  private MergeStrategy strategy = RECURSIVE;
   private MergeFormatter formatter = new MergeFormatter();
-  private DirCache cache = newInCore();
+  private ExecutorService executor;
 
   private RevCommit head;
   private String stashId;
   private RevCommit stash;
-  private ResolveMerger merger;
+  private RevCommit base;
 
   public GfsApplyStash(GitFileSystem gfs) {
     super(gfs);
@@ -54,12 +50,17 @@ public class GfsApplyStash extends GfsCommand<GfsApplyStash.Result> {
     return stash(makeStashId(id));
   }
 
+  @Nonnull
+  public GfsApplyStash executor(@Nullable ExecutorService executor) {
+    this.executor = executor;
+    return this;
+  }
+
   @Nonnull
   @Override
   protected GfsApplyStash.Result doExecute(GfsStatusProvider.Update update) throws IOException {
     prepareHead();
     prepareStash();
-    prepareMerger();
     return mergeStash();
   }
 
@@ -71,39 +72,17 @@ public class GfsApplyStash extends GfsCommand<GfsApplyStash.Result> {
   private void prepareStash() throws IOException {
     if(stashId == null) stashId = LAST_STASH;
     stash = getCommit(stashId, repo);
-  }
-
-  private void prepareMerger() throws IOException {
-    merger = (ResolveMerger)strategy.newMerger(repo, true);
-    merger.setBase(stash.getParent(0));
-    merger.setCommitNames(new String[] {"BASE", "Updated upstream", "Stashed changes"});
-    merger.setWorkingTreeIterator(iterateRoot(gfs));
+    base = getCommit(stash.getParent(0), repo);
   }
 
   @Nonnull
   private GfsApplyStash.Result mergeStash() throws IOException {
-    boolean success = merger.merge(head, stash);
-    GfsApplyStash.Result ret;
-    if(success) {
-      checkoutFiles(merger);
-      ret = success();
-    } else {
-      writeConflicts(merger);
-      ret = conflicting(readConflicts(merger));
-    }
-    return ret;
-  }
-
-  private void checkoutFiles(Merger merger) throws IOException {
-    AnyObjectId treeId = merger.getResultTreeId();
-    checkout(gfs, treeId);
-  }
-
-  private void writeConflicts(ResolveMerger merger) throws IOException {
-    Map<String, MergeConflict> conflicts = readConflicts(merger);
-    handleConflicts(gfs, conflicts)
-      .withFormatter(formatter)
-      .checkout(cache);
+    GfsTreeMerger merger = new GfsTreeMerger(gfs, new String[] {"BASE", "Updated upstream", "Stashed changes"}, formatter);
+    if(executor != null)
+      merger.withExecutor(executor);
+    if(!merger.merge(base.getTree(), head.getTree(), stash.getTree()))
+      return checkoutConflict(merger.getFailingPaths());
+    return merger.hasConflicts() ? conflicting(merger.getConflicts()) : success();
   }
 
   @Nonnull
@@ -113,6 +92,7 @@ public class GfsApplyStash extends GfsCommand<GfsApplyStash.Result> {
 
   public enum Status {
     SUCCESS,
+    CHECKOUT_CONFLICT,
     CONFLICTING
   }
 
@@ -120,20 +100,27 @@ public class GfsApplyStash extends GfsCommand<GfsApplyStash.Result> {
 
     private final GfsApplyStash.Status status;
     private final Map<String, MergeConflict> conflicts;
+    private final List<String> failingPaths;
 
-    private Result(Status status, Map<String, MergeConflict> conflicts) {
+    private Result(Status status, Map<String, MergeConflict> conflicts, List<String> failingPaths) {
       this.status = status;
       this.conflicts = unmodifiableMap(conflicts);
+      this.failingPaths = unmodifiableList(failingPaths);
     }
 
     @Nonnull
     public static GfsApplyStash.Result success() {
-      return new GfsApplyStash.Result(SUCCESS, Collections.<String, MergeConflict>emptyMap());
+      return new GfsApplyStash.Result(SUCCESS, Collections.<String, MergeConflict>emptyMap(), Collections.<String>emptyList());
+    }
+
+    @Nonnull
+    public static GfsApplyStash.Result checkoutConflict(List<String> failingPaths) {
+      return new GfsApplyStash.Result(CHECKOUT_CONFLICT, Collections.<String, MergeConflict>emptyMap(), failingPaths);
     }
 
     @Nonnull
     public static GfsApplyStash.Result conflicting(Map<String, MergeConflict> conflicts) {
-      return new GfsApplyStash.Result(CONFLICTING, conflicts);
+      return new GfsApplyStash.Result(CONFLICTING, conflicts, Collections.<String>emptyList());
     }
 
     @Override
@@ -145,10 +132,20 @@ public class GfsApplyStash extends GfsCommand<GfsApplyStash.Result> {
       return CONFLICTING == status;
     }
 
+    @Nonnull
+    public Status getStatus() {
+      return status;
+    }
+
     @Nonnull
     public Map<String, MergeConflict> getConflicts() {
       return conflicts;
     }
+
+    @Nonnull
+    public List<String> getFailingPaths() {
+      return failingPaths;
+    }
   }
 
 }
@@ -2,6 +2,7 @@ package com.beijunyi.parallelgit.filesystem.commands;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -9,6 +10,7 @@ import com.beijunyi.parallelgit.filesystem.GfsStatusProvider;
 import com.beijunyi.parallelgit.filesystem.GitFileSystem;
 import com.beijunyi.parallelgit.filesystem.exceptions.GfsCheckoutConflictException;
 import com.beijunyi.parallelgit.filesystem.exceptions.NoBranchException;
+import com.beijunyi.parallelgit.filesystem.merge.GfsTreeMerger;
 import com.beijunyi.parallelgit.filesystem.merge.MergeConflict;
 import com.beijunyi.parallelgit.filesystem.merge.MergeNote;
 import com.beijunyi.parallelgit.utils.BranchUtils;
@@ -19,6 +21,8 @@ import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.merge.*;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
 
 import static com.beijunyi.parallelgit.filesystem.commands.GfsMerge.Status.*;
 import static com.beijunyi.parallelgit.filesystem.io.GfsDefaultCheckout.checkout;
@@ -30,13 +34,14 @@ import static com.beijunyi.parallelgit.utils.CommitUtils.*;
 import static com.beijunyi.parallelgit.utils.RefUtils.getBranchRef;
 import static java.util.Collections.*;
 import static org.eclipse.jgit.dircache.DirCache.newInCore;
-import static org.eclipse.jgit.merge.MergeStrategy.RECURSIVE;
+import static org.eclipse.jgit.merge.MergeStrategy.*;
 
 public class GfsMerge extends GfsCommand<GfsMerge.Result> {
 
   private MergeStrategy strategy = RECURSIVE;
   private MergeFormatter formatter = new MergeFormatter();
   private DirCache cache = newInCore();
+  private ExecutorService executor;
 
   private String branch;
   private Ref branchRef;
@@ -112,6 +117,12 @@ public class GfsMerge extends GfsCommand<GfsMerge.Result> {
     return this;
   }
 
+  @Nonnull
+  public GfsMerge executor(@Nullable ExecutorService executor) {
+    this.executor = executor;
+    return this;
+  }
+
   @Nonnull
   public GfsMerge strategy(@Nullable MergeStrategy strategy) {
     this.strategy = strategy;
@@ -170,10 +181,17 @@ public class GfsMerge extends GfsCommand<GfsMerge.Result> {
 
   @Nonnull
   private Result threeWayMerge(GfsStatusProvider.Update update) throws IOException {
+    if(strategy == RECURSIVE || strategy == RESOLVE) {
+      List<RevCommit> bases = findMergeBases();
+      if(bases.size() <= 1)
+        return treeMerge(update, bases.isEmpty() ? null : bases.get(0));
+    }
     Merger merger = prepareMerger();
     boolean success = merger.merge(headCommit, sourceHeadCommit);
     if(success) {
-      return updateFileSystemStatus(update, merger);
+      AnyObjectId treeId = merger.getResultTreeId();
+      checkout(gfs, treeId);
+      return updateFileSystemStatus(update, treeId);
     } else {
       Map<String, MergeConflict> conflicts;
       if(merger instanceof ResolveMerger) {
@@ -188,6 +206,32 @@ public class GfsMerge extends GfsCommand<GfsMerge.Result> {
     }
   }
 
+  @Nonnull
+  private Result treeMerge(GfsStatusProvider.Update update, @Nullable RevCommit base) throws IOException {
+    GfsTreeMerger merger = prepareTreeMerger();
+    if(!merger.merge(base != null ? base.getTree() : null, headCommit.getTree(), sourceHeadCommit.getTree()))
+      return Result.checkoutConflict(merger.getFailingPaths());
+    if(merger.hasConflicts()) {
+      writeConflictMergeNote(update, merger.getUnmergedPaths());
+      return Result.conflicting(merger.getConflicts());
+    }
+    return updateFileSystemStatus(update, merger.getResultTreeId());
+  }
+
+  @Nonnull
+  private List<RevCommit> findMergeBases() throws IOException {
+    List<RevCommit> ret = new ArrayList<>();
+    try(RevWalk rw = new RevWalk(repo)) {
+      rw.setRevFilter(RevFilter.MERGE_BASE);
+      rw.markStart(rw.parseCommit(headCommit));
+      rw.markStart(rw.parseCommit(sourceHeadCommit));
+      RevCommit base;
+      while(ret.size() < 2 && (base = rw.next()) != null)
+        ret.add(base);
+    }
+    return ret;
+  }
+
   private void writeConflictMergeNote(GfsStatusProvider.Update update, List<String> unmergedPaths) {
     message = new MergeMessageFormatter().formatWithConflicts(message, unmergedPaths);
     if(squash) {
@@ -198,9 +242,7 @@ public class GfsMerge extends GfsCommand<GfsMerge.Result> {
   }
 
   @Nonnull
-  private Result updateFileSystemStatus(GfsStatusProvider.Update update, Merger merger) throws IOException {
-    AnyObjectId treeId = merger.getResultTreeId();
-    checkout(gfs, treeId);
+  private Result updateFileSystemStatus(GfsStatusProvider.Update update, AnyObjectId treeId) throws IOException {
     RevCommit newCommit = null;
     if(commit && !squash) {
       prepareCommitter();
@@ -234,18 +276,31 @@ public class GfsMerge extends GfsCommand<GfsMerge.Result> {
     return true;
   }
 
+  @Nonnull
+  private GfsTreeMerger prepareTreeMerger() {
+    GfsTreeMerger merger = new GfsTreeMerger(gfs, commitNames(), formatter);
+    if(executor != null)
+      merger.withExecutor(executor);
+    return merger;
+  }
+
   @Nonnull
   private Merger prepareMerger() throws IOException {
     Merger merger = strategy.newMerger(repo, true);
     if(merger instanceof ResolveMerger) {
       ResolveMerger resolver = ((ResolveMerger)merger);
       resolver.setDirCache(cache);
-      resolver.setCommitNames(new String[] {"BASE", branchRef.getName(), sourceRef.getName()});
+      resolver.setCommitNames(commitNames());
       resolver.setWorkingTreeIterator(iterateRoot(gfs));
     }
     return merger;
   }
 
+  @Nonnull
+  private String[] commitNames() {
+    return new String[] {"BASE", branchRef.getName(), sourceRef.getName()};
+  }
+
   private void prepareCommitter() {
     if(committer == null) committer = new PersonIdent(repo);
   }
@@ -267,11 +322,17 @@ public class GfsMerge extends GfsCommand<GfsMerge.Result> {
     private final Status status;
     private final Map<String, MergeConflict> conflicts;
     private final RevCommit commit;
+    private final List<String> failingPaths;
 
-    private Result(Status status, Map<String, MergeConflict> conflicts, @Nullable RevCommit commit) {
+    private Result(Status status, Map<String, MergeConflict> conflicts, @Nullable RevCommit commit, List<String> failingPaths) {
       this.status = status;
       this.conflicts = conflicts;
       this.commit = commit;
+      this.failingPaths = failingPaths;
+    }
+
+    private Result(Status status, Map<String, MergeConflict> conflicts, @Nullable RevCommit commit) {
+      this(status, conflicts, commit, Collections.<String>emptyList());
     }
 
     private Result(Status status, @Nullable RevCommit commit) {
@@ -281,7 +342,12 @@ public class GfsMerge extends GfsCommand<GfsMerge.Result> {
 
     @Nonnull
     public static Result checkoutConflict() {
-      return new Result(CHECKOUT_CONFLICT, null);
+      return checkoutConflict(Collections.<String>emptyList());
+    }
+
+    @Nonnull
+    public static Result checkoutConflict(List<String> failingPaths) {
+      return new Result(CHECKOUT_CONFLICT, Collections.<String, MergeConflict>emptyMap(), null, failingPaths);
     }
 
     @Nonnull
@@ -354,6 +420,11 @@ public class GfsMerge extends GfsCommand<GfsMerge.Result> {
       return commit;
     }
 
+    @Nonnull
+    public List<String> getFailingPaths() {
+      return failingPaths;
+    }
+
   }
 
 }
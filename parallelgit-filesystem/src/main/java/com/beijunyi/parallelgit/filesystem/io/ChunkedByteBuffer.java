@@ -0,0 +1,168 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+
+import static java.lang.System.arraycopy;
+
+final class ChunkedByteBuffer {
+
+  static final int CHUNK_SIZE = 64 * 1024;
+  private static final byte[] NO_BYTES = new byte[0];
+
+  private byte[] base;
+  private boolean shared;
+  private byte[][] chunks = new byte[0][];
+  private int chunkCount;
+  private int size;
+
+  ChunkedByteBuffer() {
+    this(NO_BYTES);
+  }
+
+  ChunkedByteBuffer(byte[] bytes) {
+    base = bytes;
+    shared = true;
+    size = bytes.length;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int read(int position, ByteBuffer dst) {
+    if(position >= size)
+      return -1;
+    int length = Math.min(dst.remaining(), size - position);
+    int end = position + length;
+    for(int p = position; p < end; ) {
+      byte[] segment = segmentOf(p);
+      int offset = offsetOf(p);
+      int n = Math.min(segment.length - offset, end - p);
+      dst.put(segment, offset, n);
+      p += n;
+    }
+    return length;
+  }
+
+  int write(int position, ByteBuffer src) {
+    int length = src.remaining();
+    int end = position + length;
+    if(end < 0)
+      throw new IllegalArgumentException("File size cannot exceed " + Integer.MAX_VALUE + " bytes");
+    if(size == 0 && position == 0) {
+      base = new byte[length];
+      shared = false;
+      chunkCount = 0;
+      src.get(base);
+      size = length;
+      return length;
+    }
+    ensureCapacity(end);
+    if(position > size)
+      clear(size, position);
+    for(int p = position; p < end; ) {
+      byte[] segment = writableSegmentOf(p);
+      int offset = offsetOf(p);
+      int n = Math.min(segment.length - offset, end - p);
+      src.get(segment, offset, n);
+      p += n;
+    }
+    size = Math.max(size, end);
+    return length;
+  }
+
+  void truncate(int newSize) {
+    if(newSize >= size)
+      return;
+    int keep = newSize > base.length ? (newSize - base.length + CHUNK_SIZE - 1) / CHUNK_SIZE : 0;
+    for(int i = keep; i < chunkCount; i++)
+      chunks[i] = null;
+    chunkCount = keep;
+    size = newSize;
+  }
+
+  @Nonnull
+  byte[] toByteArray() {
+    if(chunkCount == 0 && size == base.length) {
+      shared = true;
+      return base;
+    }
+    byte[] ret = new byte[size];
+    int copied = Math.min(size, base.length);
+    arraycopy(base, 0, ret, 0, copied);
+    for(int i = 0; copied < size; i++) {
+      int n = Math.min(CHUNK_SIZE, size - copied);
+      arraycopy(chunks[i], 0, ret, copied, n);
+      copied += n;
+    }
+    return ret;
+  }
+
+  @Nonnull
+  InputStream openStream() {
+    return new InputStream() {
+
+      private int position;
+
+      @Override
+      public int read() {
+        if(position >= size)
+          return -1;
+        return segmentOf(position)[offsetOf(position++)] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if(len == 0)
+          return 0;
+        int n = ChunkedByteBuffer.this.read(position, ByteBuffer.wrap(b, off, len));
+        if(n > 0)
+          position += n;
+        return n;
+      }
+    };
+  }
+
+  private void ensureCapacity(int capacity) {
+    int required = capacity > base.length ? (capacity - base.length + CHUNK_SIZE - 1) / CHUNK_SIZE : 0;
+    if(required <= chunkCount)
+      return;
+    if(required > chunks.length)
+      chunks = Arrays.copyOf(chunks, Math.max(required, chunks.length * 2));
+    for(int i = chunkCount; i < required; i++)
+      chunks[i] = new byte[CHUNK_SIZE];
+    chunkCount = required;
+  }
+
+  private void clear(int from, int to) {
+    for(int p = from; p < to; ) {
+      byte[] segment = writableSegmentOf(p);
+      int offset = offsetOf(p);
+      int n = Math.min(segment.length - offset, to - p);
+      Arrays.fill(segment, offset, offset + n, (byte) 0);
+      p += n;
+    }
+  }
+
+  @Nonnull
+  private byte[] segmentOf(int position) {
+    return position < base.length ? base : chunks[(position - base.length) / CHUNK_SIZE];
+  }
+
+  @Nonnull
+  private byte[] writableSegmentOf(int position) {
+    if(position < base.length && shared) {
+      base = base.clone();
+      shared = false;
+    }
+    return segmentOf(position);
+  }
+
+  private int offsetOf(int position) {
+    return position < base.length ? position : (position - base.length) % CHUNK_SIZE;
+  }
+
+}
@@ -0,0 +1,502 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.beijunyi.parallelgit.utils.io.GitFileEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.util.Paths;
+
+import static com.beijunyi.parallelgit.utils.io.GitFileEntry.*;
+import static java.util.Collections.unmodifiableList;
+import static org.eclipse.jgit.lib.Constants.OBJECT_ID_LENGTH;
+import static org.eclipse.jgit.lib.Constants.encode;
+import static org.eclipse.jgit.lib.FileMode.REGULAR_FILE;
+import static org.eclipse.jgit.lib.FileMode.TREE;
+import static org.eclipse.jgit.util.RawParseUtils.decode;
+
+/*
+ * The names, raw source entries and the order of the children never change; every structural change returns a new
+ * instance. The only mutable state is the node slot of each child, which is filled in when a child of a lazily loaded
+ * tree is first accessed. Slots are written with volatile semantics, so readers without the directory's lock see
+ * either no node or a fully constructed one, and fall back to the locked lookup in the former case.
+ */
+public final class DirectoryChildren {
+
+  private static final byte[][] NO_NAMES = new byte[0][];
+  private static final Node[] NO_NODES = new Node[0];
+  private static final DirectoryChildren EMPTY = new DirectoryChildren(null, NO_NAMES, NO_NODES, null);
+
+  private final RawTree source;
+  private final byte[][] names;
+  private final AtomicReferenceArray<Node> nodes;
+  private final int[] entries;
+
+  private DirectoryChildren(@Nullable RawTree source, byte[][] names, Node[] nodes, @Nullable int[] entries) {
+    this.source = source;
+    this.names = names;
+    this.nodes = new AtomicReferenceArray<>(nodes);
+    this.entries = entries;
+  }
+
+  @Nonnull
+  public static DirectoryChildren empty() {
+    return EMPTY;
+  }
+
+  @Nonnull
+  public static DirectoryChildren fromRawTree(ObjectId id, byte[] bytes) {
+    RawTree source = RawTree.parse(id, bytes);
+    int size = source.size();
+    if(size == 0)
+      return EMPTY;
+    int[] entries = new int[size];
+    for(int i = 0; i < size; i++)
+      entries[i] = i;
+    return new DirectoryChildren(source, new byte[size][], new Node[size], entries);
+  }
+
+  @Nonnull
+  public static Builder builder(int capacity) {
+    return new Builder(capacity);
+  }
+
+  public int size() {
+    return nodes.length();
+  }
+
+  public boolean isEmpty() {
+    return nodes.length() == 0;
+  }
+
+  @Nonnull
+  public String getName(int index) {
+    int entry = sourceEntryOf(index);
+    return entry >= 0 ? source.getName(entry) : decode(names[index]);
+  }
+
+  @Nonnull
+  public byte[] getRawName(int index) {
+    int entry = sourceEntryOf(index);
+    return entry >= 0 ? source.getRawName(entry) : names[index];
+  }
+
+  @Nullable
+  public Node getNode(int index) {
+    return nodes.get(index);
+  }
+
+  @Nonnull
+  public GitFileEntry getSourceEntry(int index) {
+    int entry = sourceEntryOf(index);
+    return entry >= 0 ? source.getEntry(entry) : missingEntry();
+  }
+
+  public long getSourceSize(int index) {
+    int entry = sourceEntryOf(index);
+    long[] sizes = entry >= 0 ? source.sizes : null;
+    return sizes != null ? sizes[entry] : -1;
+  }
+
+  @Nullable
+  public ObjectId getSourceId() {
+    return source != null ? source.id : null;
+  }
+
+  @Nonnull
+  public GitFileEntry findSourceEntry(String name) {
+    if(source == null)
+      return missingEntry();
+    int entry = source.indexOf(encode(name));
+    return entry >= 0 ? source.getEntry(entry) : missingEntry();
+  }
+
+  public int indexOf(String name) {
+    return indexOf(encode(name));
+  }
+
+  public int indexOf(byte[] name) {
+    return indexOf(name, 0, name.length);
+  }
+
+  public int indexOf(byte[] buf, int start, int end) {
+    int ret = search(buf, start, end, REGULAR_FILE.getBits());
+    if(ret < 0)
+      ret = search(buf, start, end, TREE.getBits());
+    return ret;
+  }
+
+  public boolean contains(String name) {
+    return indexOf(name) >= 0;
+  }
+
+  @Nullable
+  public Node get(String name) {
+    int index = indexOf(name);
+    return index >= 0 ? nodes.get(index) : null;
+  }
+
+  @Nonnull
+  public DirectoryChildren put(String name, Node node) {
+    byte[] raw = encode(name);
+    int index = indexOf(raw);
+    if(index >= 0 && isTree(modeOf(index)) == node.isDirectory()) {
+      Node[] newNodes = nodeArray();
+      newNodes[index] = node;
+      return new DirectoryChildren(source, names, newNodes, entries);
+    }
+    DirectoryChildren base = index >= 0 ? remove(index) : this;
+    return base.insert(raw, node);
+  }
+
+  @Nonnull
+  public DirectoryChildren remove(String name) {
+    int index = indexOf(name);
+    return index >= 0 ? remove(index) : this;
+  }
+
+  @Nonnull
+  public List<String> names() {
+    List<String> ret = new ArrayList<>(nodes.length());
+    for(int i = 0; i < nodes.length(); i++)
+      ret.add(getName(i));
+    return unmodifiableList(ret);
+  }
+
+  public boolean hasLoadedNodes() {
+    for(int i = 0; i < nodes.length(); i++)
+      if(nodes.get(i) != null)
+        return true;
+    return false;
+  }
+
+  public long weight() {
+    long ret = source != null ? source.bytes.length : 0;
+    for(byte[] name : names)
+      if(name != null)
+        ret += name.length + OBJECT_ID_LENGTH;
+    return ret;
+  }
+
+  @Nonnull
+  public List<Node> nodes() {
+    List<Node> ret = new ArrayList<>(nodes.length());
+    for(int i = 0; i < nodes.length(); i++) {
+      Node node = nodes.get(i);
+      if(node != null)
+        ret.add(node);
+    }
+    return unmodifiableList(ret);
+  }
+
+  void formatSourceEntry(int index, TreeFormatter formatter) {
+    source.format(entries[index], formatter);
+  }
+
+  void formatEntry(int index, FileMode mode, AnyObjectId id, TreeFormatter formatter) {
+    int entry = sourceEntryOf(index);
+    if(entry >= 0)
+      source.format(entry, mode, id, formatter);
+    else
+      formatter.append(names[index], mode, id);
+  }
+
+  void setNode(int index, Node node) {
+    nodes.set(index, node);
+  }
+
+  void fillSourceSizes(Map<ObjectId, Long> sizes) {
+    if(source == null)
+      return;
+    long[] previous = source.sizes;
+    long[] ret = new long[source.size()];
+    for(int i = 0; i < ret.length; i++) {
+      Long size = previous != null && previous[i] != -1 ? Long.valueOf(previous[i]) : sizes.get(source.getId(i));
+      ret[i] = size != null ? size : -1;
+    }
+    source.sizes = ret;
+  }
+
+  @Nonnull
+  DirectoryChildren copy() {
+    return new DirectoryChildren(source, names, nodeArray(), entries);
+  }
+
+  @Nonnull
+  private Node[] nodeArray() {
+    Node[] ret = new Node[nodes.length()];
+    for(int i = 0; i < ret.length; i++)
+      ret[i] = nodes.get(i);
+    return ret;
+  }
+
+  @Nonnull
+  private DirectoryChildren insert(byte[] name, Node node) {
+    int index = -(search(name, 0, name.length, modeOf(node)) + 1);
+    Node[] nodes = nodeArray();
+    int size = nodes.length;
+    byte[][] newNames = new byte[size + 1][];
+    Node[] newNodes = new Node[size + 1];
+    System.arraycopy(names, 0, newNames, 0, index);
+    System.arraycopy(nodes, 0, newNodes, 0, index);
+    newNames[index] = name;
+    newNodes[index] = node;
+    System.arraycopy(names, index, newNames, index + 1, size - index);
+    System.arraycopy(nodes, index, newNodes, index + 1, size - index);
+    int[] newEntries = null;
+    if(entries != null) {
+      newEntries = new int[size + 1];
+      System.arraycopy(entries, 0, newEntries, 0, index);
+      newEntries[index] = -1;
+      System.arraycopy(entries, index, newEntries, index + 1, size - index);
+    }
+    return new DirectoryChildren(source, newNames, newNodes, newEntries);
+  }
+
+  @Nonnull
+  private DirectoryChildren remove(int index) {
+    Node[] nodes = nodeArray();
+    int size = nodes.length;
+    if(size == 1 && source == null)
+      return EMPTY;
+    byte[][] newNames = new byte[size - 1][];
+    Node[] newNodes = new Node[size - 1];
+    System.arraycopy(names, 0, newNames, 0, index);
+    System.arraycopy(nodes, 0, newNodes, 0, index);
+    System.arraycopy(names, index + 1, newNames, index, size - index - 1);
+    System.arraycopy(nodes, index + 1, newNodes, index, size - index - 1);
+    int[] newEntries = null;
+    if(entries != null) {
+      newEntries = new int[size - 1];
+      System.arraycopy(entries, 0, newEntries, 0, index);
+      System.arraycopy(entries, index + 1, newEntries, index, size - index - 1);
+    }
+    return new DirectoryChildren(source, newNames, newNodes, newEntries);
+  }
+
+  private int sourceEntryOf(int index) {
+    return entries != null ? entries[index] : -1;
+  }
+
+  private int modeOf(int index) {
+    Node node = nodes.get(index);
+    if(node != null)
+      return modeOf(node);
+    return source.getMode(entries[index]);
+  }
+
+  private int search(byte[] buf, int start, int end, int mode) {
+    int low = 0;
+    int high = nodes.length() - 1;
+    while(low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(mid, buf, start, end, mode);
+      if(cmp < 0)
+        low = mid + 1;
+      else if(cmp > 0)
+        high = mid - 1;
+      else
+        return mid;
+    }
+    return -(low + 1);
+  }
+
+  private int compare(int index, byte[] buf, int start, int end, int mode) {
+    int entry = sourceEntryOf(index);
+    if(entry >= 0)
+      return source.compare(entry, buf, start, end, mode);
+    byte[] name = names[index];
+    return Paths.compare(name, 0, name.length, modeOf(index), buf, start, end, mode);
+  }
+
+  private static int modeOf(Node node) {
+    return node.isDirectory() ? TREE.getBits() : REGULAR_FILE.getBits();
+  }
+
+  private static boolean isTree(int mode) {
+    return (mode & FileMode.TYPE_MASK) == FileMode.TYPE_TREE;
+  }
+
+  private static int compare(byte[] a, int aMode, byte[] b, int bMode) {
+    return Paths.compare(a, 0, a.length, aMode, b, 0, b.length, bMode);
+  }
+
+  public static class Builder {
+
+    private byte[][] names;
+    private Node[] nodes;
+    private int size;
+    private boolean sorted = true;
+
+    private Builder(int capacity) {
+      names = new byte[capacity][];
+      nodes = new Node[capacity];
+    }
+
+    @Nonnull
+    public Builder add(String name, Node node) {
+      if(size == nodes.length) {
+        int capacity = Math.max(4, size * 2);
+        names = Arrays.copyOf(names, capacity);
+        nodes = Arrays.copyOf(nodes, capacity);
+      }
+      byte[] raw = encode(name);
+      if(sorted && size > 0 && compare(names[size - 1], modeOf(nodes[size - 1]), raw, modeOf(node)) >= 0)
+        sorted = false;
+      names[size] = raw;
+      nodes[size] = node;
+      size++;
+      return this;
+    }
+
+    @Nonnull
+    public DirectoryChildren build() {
+      if(size == 0)
+        return EMPTY;
+      if(!sorted)
+        sort();
+      byte[][] retNames = size == names.length ? names : Arrays.copyOf(names, size);
+      Node[] retNodes = size == nodes.length ? nodes : Arrays.copyOf(nodes, size);
+      return new DirectoryChildren(null, retNames, retNodes, null);
+    }
+
+    private void sort() {
+      Integer[] order = new Integer[size];
+      for(int i = 0; i < size; i++)
+        order[i] = i;
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          return DirectoryChildren.compare(names[a], modeOf(nodes[a]), names[b], modeOf(nodes[b]));
+        }
+      });
+      byte[][] sortedNames = new byte[size][];
+      Node[] sortedNodes = new Node[size];
+      for(int i = 0; i < size; i++) {
+        sortedNames[i] = names[order[i]];
+        sortedNodes[i] = nodes[order[i]];
+      }
+      names = sortedNames;
+      nodes = sortedNodes;
+    }
+
+  }
+
+  private static class RawTree {
+
+    private final ObjectId id;
+    private final byte[] bytes;
+    private final int[] offsets;
+    private volatile long[] sizes;
+
+    private RawTree(ObjectId id, byte[] bytes, int[] offsets) {
+      this.id = id;
+      this.bytes = bytes;
+      this.offsets = offsets;
+    }
+
+    @Nonnull
+    private static RawTree parse(ObjectId id, byte[] bytes) {
+      int count = 0;
+      for(int p = 0; p < bytes.length; p = nameEnd(bytes, p) + 1 + OBJECT_ID_LENGTH)
+        count++;
+      int[] offsets = new int[count];
+      int i = 0;
+      for(int p = 0; p < bytes.length; p = nameEnd(bytes, p) + 1 + OBJECT_ID_LENGTH)
+        offsets[i++] = p;
+      return new RawTree(id, bytes, offsets);
+    }
+
+    private int size() {
+      return offsets.length;
+    }
+
+    private int getMode(int entry) {
+      int ret = 0;
+      for(int p = offsets[entry]; bytes[p] != ' '; p++)
+        ret = (ret << 3) + (bytes[p] - '0');
+      return ret;
+    }
+
+    @Nonnull
+    private String getName(int entry) {
+      int start = nameStart(entry);
+      return decode(bytes, start, nameEnd(bytes, start));
+    }
+
+    @Nonnull
+    private byte[] getRawName(int entry) {
+      int start = nameStart(entry);
+      return Arrays.copyOfRange(bytes, start, nameEnd(bytes, start));
+    }
+
+    @Nonnull
+    private GitFileEntry getEntry(int entry) {
+      return newEntry(getId(entry), FileMode.fromBits(getMode(entry)));
+    }
+
+    @Nonnull
+    private ObjectId getId(int entry) {
+      return ObjectId.fromRaw(bytes, nameEnd(bytes, nameStart(entry)) + 1);
+    }
+
+    private void format(int entry, TreeFormatter formatter) {
+      int start = nameStart(entry);
+      int end = nameEnd(bytes, start);
+      formatter.append(bytes, start, end - start, FileMode.fromBits(getMode(entry)), bytes, end + 1);
+    }
+
+    private void format(int entry, FileMode mode, AnyObjectId id, TreeFormatter formatter) {
+      int start = nameStart(entry);
+      formatter.append(bytes, start, nameEnd(bytes, start) - start, mode, id);
+    }
+
+    private int indexOf(byte[] name) {
+      int ret = search(name, REGULAR_FILE.getBits());
+      if(ret < 0)
+        ret = search(name, TREE.getBits());
+      return ret;
+    }
+
+    private int search(byte[] name, int mode) {
+      int low = 0;
+      int high = offsets.length - 1;
+      while(low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compare(mid, name, 0, name.length, mode);
+        if(cmp < 0)
+          low = mid + 1;
+        else if(cmp > 0)
+          high = mid - 1;
+        else
+          return mid;
+      }
+      return -1;
+    }
+
+    private int compare(int entry, byte[] buf, int start, int end, int mode) {
+      int nameStart = nameStart(entry);
+      return Paths.compare(bytes, nameStart, nameEnd(bytes, nameStart), getMode(entry), buf, start, end, mode);
+    }
+
+    private int nameStart(int entry) {
+      int p = offsets[entry];
+      while(bytes[p] != ' ')
+        p++;
+      return p + 1;
+    }
+
+    private static int nameEnd(byte[] bytes, int p) {
+      while(bytes[p] != 0)
+        p++;
+      return p;
+    }
+
+  }
+
+}
@@ -2,7 +2,8 @@ package com.beijunyi.parallelgit.filesystem.io;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -10,14 +11,22 @@ import com.beijunyi.parallelgit.filesystem.GfsObjectService;
 import com.beijunyi.parallelgit.filesystem.exceptions.IncompatibleFileModeException;
 import com.beijunyi.parallelgit.utils.io.GitFileEntry;
 import com.beijunyi.parallelgit.utils.io.TreeSnapshot;
+import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.TreeFormatter;
 
+import static com.beijunyi.parallelgit.filesystem.utils.GfsForkJoinUtils.invokeAll;
 import static com.beijunyi.parallelgit.utils.io.GitFileEntry.*;
 import static java.util.Collections.*;
+import static org.eclipse.jgit.lib.Constants.encode;
+import static org.eclipse.jgit.lib.FileMode.GITLINK;
 import static org.eclipse.jgit.lib.FileMode.TREE;
 
-public class DirectoryNode extends Node<TreeSnapshot, Map<String, Node>> {
+public class DirectoryNode extends Node<TreeSnapshot, DirectoryChildren> {
+
+  private volatile DirectoryChildren sized;
+  private volatile DirectoryChildren origins;
 
   protected DirectoryNode(ObjectId id, GfsObjectService objService) {
     super(id, TREE, objService);
@@ -59,14 +68,20 @@ public class DirectoryNode extends Node<TreeSnapshot, Map<String, Node>> {
   @Override
   public void updateOrigin(GitFileEntry entry) throws IOException {
     super.updateOrigin(entry);
-    if(isInitialized()) {
+    DirectoryChildren children = data;
+    if(children != null) {
       if(origin.isSubtree()) {
-        snapshot = objService.readTree(entry.getId());
-        Set<String> updatedChildren = updateChildrenOrigins();
-        Collection<Node> notUpdatedNodes = findNotUpdatedChildren(updatedChildren);
-        updateOriginsToTrivial(notUpdatedNodes);
+        boolean current = origin.getId().equals(id);
+        for(int i = 0; i < children.size(); i++) {
+          Node node = children.getNode(i);
+          if(node == null)
+            continue;
+          GitFileEntry childOrigin = current ? currentEntryOf(node) : findOrigin(children.getName(i));
+          if(!node.getOrigin().equals(childOrigin))
+            node.updateOrigin(childOrigin);
+        }
       } else {
-        updateOriginsToTrivial(data.values());
+        updateOriginsToTrivial(children.nodes());
       }
     }
   }
@@ -77,40 +92,111 @@ public class DirectoryNode extends Node<TreeSnapshot, Map<String, Node>> {
 
   @Nonnull
   @Override
-  protected Map<String, Node> loadData(TreeSnapshot snapshot) throws IOException {
-    Map<String, Node> ret = getDefaultData();
+  protected DirectoryChildren getData() throws IOException {
+    DirectoryChildren ret = data;
+    if(ret != null) {
+      objService.getDataBudget().touch(this);
+      return ret;
+    }
+    if(!objService.isLazyDirectories())
+      return super.getData();
+    boolean loaded = false;
+    synchronized(this) {
+      ret = data;
+      if(ret == null) {
+        if(id == null) throw new IllegalStateException();
+        ret = DirectoryChildren.fromRawTree(id, objService.readRawTree(id));
+        data = ret;
+        loaded = true;
+      }
+    }
+    if(loaded)
+      objService.getDataBudget().loaded(this, weigh(ret));
+    return ret;
+  }
+
+  @Nonnull
+  @Override
+  protected DirectoryChildren loadData(TreeSnapshot snapshot) throws IOException {
+    Map<String, GitFileEntry> entries = snapshot.getData();
+    DirectoryChildren.Builder ret = DirectoryChildren.builder(entries.size());
     boolean updateOrigin = origin != null && origin.getId().equals(snapshot.getId());
-    for(Map.Entry<String, GitFileEntry> child : snapshot.getData().entrySet()) {
+    for(Map.Entry<String, GitFileEntry> child : entries.entrySet()) {
       GitFileEntry entry = child.getValue();
       Node node = Node.fromEntry(entry, this);
-      ret.put(child.getKey(), node);
+      node.name = child.getKey();
+      ret.add(child.getKey(), node);
       if(updateOrigin)
         node.updateOrigin(entry);
     }
-    return ret;
+    return ret.build();
   }
 
   @Override
-  protected boolean isTrivial(Map<String, Node> data) throws IOException {
-    boolean ret = true;
-    for(Node child : data.values())
-      if(!child.isTrivial()) {
-        ret = false;
-        break;
-      }
-    return ret;
+  protected long weigh(DirectoryChildren data) {
+    return data.weight();
+  }
+
+  @Override
+  protected boolean isEvictable(DirectoryChildren data) {
+    return !data.hasLoadedNodes();
+  }
+
+  @Override
+  protected boolean isTrivial(DirectoryChildren data) throws IOException {
+    for(int i = 0; i < data.size(); i++) {
+      Node child = data.getNode(i);
+      if(child == null || !child.isTrivial())
+        return false;
+    }
+    return true;
   }
 
   @Nonnull
-  protected TreeSnapshot captureData(Map<String, Node> data, boolean persist) throws IOException {
-    SortedMap<String, GitFileEntry> entries = new TreeMap<>();
-    for(Map.Entry<String, Node> child : data.entrySet()) {
-      Node node = child.getValue();
-      ObjectId id = node.getObjectId(persist);
+  protected TreeSnapshot captureData(DirectoryChildren data, boolean persist) throws IOException {
+    Map<Node, ObjectId> persisted = persist ? persistChildrenInParallel(data.nodes()) : Collections.<Node, ObjectId>emptyMap();
+    TreeFormatter ret = new TreeFormatter();
+    for(int i = 0; i < data.size(); i++) {
+      Node node = data.getNode(i);
+      if(node == null) {
+        data.formatSourceEntry(i, ret);
+        continue;
+      }
+      ObjectId id = persisted.get(node);
+      if(id == null)
+        id = node.getObjectId(persist);
       if(!isTrivial(id))
-        entries.put(child.getKey(), newEntry(id, node.getMode()));
+        data.formatEntry(i, node.getMode(), id, ret);
+    }
+    return TreeSnapshot.capture(ret);
+  }
+
+  @Nonnull
+  private Map<Node, ObjectId> persistChildrenInParallel(Collection<Node> children) throws IOException {
+    ForkJoinPool pool = objService.getFlushPool();
+    if(pool == null)
+      return emptyMap();
+    List<Node> pending = new ArrayList<>();
+    List<Callable<ObjectId>> tasks = new ArrayList<>();
+    for(final Node child : children) {
+      ObjectId id = child.id;
+      if(id == null || child.getStoredId() == null && !objService.hasObject(id)) {
+        pending.add(child);
+        tasks.add(new Callable<ObjectId>() {
+          @Override
+          public ObjectId call() throws IOException {
+            return child.getObjectId(true);
+          }
+        });
+      }
     }
-    return TreeSnapshot.capture(entries);
+    if(tasks.size() < 2)
+      return emptyMap();
+    List<ObjectId> ids = invokeAll(pool, tasks);
+    Map<Node, ObjectId> ret = new IdentityHashMap<>();
+    for(int i = 0; i < ids.size(); i++)
+      ret.put(pending.get(i), ids.get(i));
+    return ret;
   }
 
   @Nonnull
@@ -119,11 +205,19 @@ public class DirectoryNode extends Node<TreeSnapshot, Map<String, Node>> {
     DirectoryNode ret;
     if(isInitialized()) {
       ret = DirectoryNode.newDirectory(parent);
-      for(Map.Entry<String, Node> child : data.entrySet()) {
-        String name = child.getKey();
-        Node node = child.getValue();
-        ret.addChild(name, node.clone(ret), false);
+      DirectoryChildren children = data.copy();
+      for(int i = 0; i < children.size(); i++) {
+        Node node = children.getNode(i);
+        if(node != null) {
+          Node copy = node.clone(ret);
+          copy.name = node.name;
+          children.setNode(i, copy);
+        }
       }
+      ObjectId source = children.getSourceId();
+      if(source != null)
+        parent.getObjectService().pullObject(source, objService);
+      ret.data = children;
     } else if(id != null) {
       ret = DirectoryNode.fromTree(id, parent);
       parent.getObjectService().pullObject(id, objService);
@@ -132,44 +226,139 @@ public class DirectoryNode extends Node<TreeSnapshot, Map<String, Node>> {
     return ret;
   }
 
+  @Nonnull
+  @Override
+  protected Node fork(DirectoryNode parent) throws IOException {
+    DirectoryNode ret = newDirectory(parent);
+    forkInto(ret);
+    return ret;
+  }
+
+  protected synchronized void forkInto(DirectoryNode target) throws IOException {
+    DirectoryChildren children = data;
+    if(children == null || id != null && objService.hasObject(id))
+      children = null;
+    else {
+      children = children.copy();
+      for(int i = 0; i < children.size(); i++) {
+        Node node = children.getNode(i);
+        if(node != null) {
+          Node copy = node.fork(target);
+          copy.name = node.name;
+          children.setNode(i, copy);
+        }
+      }
+    }
+    target.data = children;
+    target.id = id;
+    target.origin = origin;
+    target.snapshot = snapshot;
+    target.origins = origins;
+  }
+
+  void prefetchSizes() throws IOException {
+    DirectoryChildren children = getData();
+    if(sized == children)
+      return;
+    sized = children;
+    List<FileNode> files = new ArrayList<>();
+    Set<ObjectId> blobs = new HashSet<>();
+    for(int i = 0; i < children.size(); i++) {
+      Node node = children.getNode(i);
+      if(node instanceof FileNode) {
+        ObjectId blob = ((FileNode) node).getUnsizedBlob();
+        if(blob != null) {
+          files.add((FileNode) node);
+          blobs.add(blob);
+        }
+      } else if(node == null && children.getSourceSize(i) == -1) {
+        GitFileEntry entry = children.getSourceEntry(i);
+        if(!entry.isMissing() && !TREE.equals(entry.getMode()) && !GITLINK.equals(entry.getMode()))
+          blobs.add(entry.getId());
+      }
+    }
+    if(blobs.size() < 2)
+      return;
+    Map<ObjectId, Long> sizes;
+    try {
+      sizes = objService.getBlobSizes(blobs);
+    } catch(MissingObjectException e) {
+      return;
+    }
+    for(FileNode file : files) {
+      ObjectId blob = file.getUnsizedBlob();
+      Long size = blob != null ? sizes.get(blob) : null;
+      if(size != null)
+        file.fillSize(blob, size);
+    }
+    children.fillSourceSizes(sizes);
+  }
+
   @Nonnull
   public List<String> listChildren() throws IOException {
-    List<String> ret = new ArrayList<>(getData().keySet());
-    Collections.sort(ret);
-    return unmodifiableList(ret);
+    return getData().names();
   }
 
   public boolean hasChild(String name) throws IOException {
-    return getData().containsKey(name);
+    return getData().contains(name);
   }
 
   @Nullable
   public Node getChild(String name) throws IOException {
-    return getData().get(name);
+    byte[] raw = encode(name);
+    return getChild(raw, 0, raw.length);
+  }
+
+  @Nullable
+  public Node getChild(byte[] buf, int start, int end) throws IOException {
+    DirectoryChildren children = getData();
+    int index = children.indexOf(buf, start, end);
+    if(index < 0)
+      return null;
+    Node ret = children.getNode(index);
+    return ret != null ? ret : loadChild(buf, start, end);
   }
 
   public boolean addChild(String name, Node child, boolean replace) throws IOException {
-    if(!replace && getData().containsKey(name))
-      return false;
-    if(snapshot != null) {
-      GitFileEntry origin = snapshot.getChild(name);
-      if(!origin.isMissing()) child.updateOrigin(origin);
-    }
-    getData().put(name, child);
-    id = null;
-    invalidateParentCache();
-    return true;
+    while(true) {
+      getData();
+      synchronized(this) {
+        DirectoryChildren children = data;
+        if(children == null)
+          continue;
+        if(!replace && children.contains(name))
+          return false;
+        Node replaced = children.get(name);
+        GitFileEntry origin = findOrigin(name);
+        if(!origin.isMissing()) child.updateOrigin(origin);
+        child.name = name;
+        data = children.put(name, child);
+        if(replaced != null && replaced != child)
+          replaced.exile();
+        structureChanged(invalidate(), name, origin);
+        return true;
+      }
+    }
   }
 
   public boolean removeChild(String name) throws IOException {
-    Node removed = getData().remove(name);
-    if(removed != null) {
-      removed.exile();
-      id = null;
-      invalidateParentCache();
-      return true;
+    while(true) {
+      getData();
+      synchronized(this) {
+        DirectoryChildren children = data;
+        if(children == null)
+          continue;
+        int index = children.indexOf(name);
+        if(index < 0)
+          return false;
+        Node removed = children.getNode(index);
+        data = children.remove(name);
+        if(removed != null)
+          removed.exile();
+        structureChanged(invalidate(), name, findOrigin(name));
+        return true;
+      }
     }
-    return false;
   }
 
   @Override
@@ -180,32 +369,84 @@ public class DirectoryNode extends Node<TreeSnapshot, Map<String, Node>> {
 
   @Nonnull
   @Override
-  protected Map<String, Node> getDefaultData() {
-    return new ConcurrentHashMap<>();
+  protected DirectoryChildren getDefaultData() {
+    return DirectoryChildren.empty();
+  }
+
+  @Nullable
+  private Node loadChild(byte[] buf, int start, int end) throws IOException {
+    while(true) {
+      getData();
+      synchronized(this) {
+        DirectoryChildren children = data;
+        if(children != null)
+          return loadChild(children, buf, start, end);
+      }
+    }
+  }
+
+  @Nullable
+  private Node loadChild(DirectoryChildren children, byte[] buf, int start, int end) throws IOException {
+    int index = children.indexOf(buf, start, end);
+    if(index < 0)
+      return null;
+    Node ret = children.getNode(index);
+    if(ret == null) {
+      GitFileEntry entry = children.getSourceEntry(index);
+      ret = Node.fromEntry(entry, this);
+      ret.name = children.getName(index);
+      long size = children.getSourceSize(index);
+      if(size != -1 && ret instanceof FileNode)
+        ((FileNode) ret).fillSize(entry.getId(), size);
+      if(origin.isSubtree() && origin.getId().equals(children.getSourceId()))
+        ret.updateOrigin(entry);
+      else {
+        GitFileEntry origin = findOrigin(ret.name);
+        if(!origin.isMissing()) ret.updateOrigin(origin);
+      }
+      children.setNode(index, ret);
+    }
+    return ret;
   }
 
   @Nonnull
-  private Set<String> updateChildrenOrigins() throws IOException {
-    Set<String> ret = new HashSet<>();
-    for(Map.Entry<String, GitFileEntry> child : snapshot.getData().entrySet()) {
-      String name = child.getKey();
-      Node node = data.get(name);
-      if(node != null && !node.getOrigin().equals(child.getValue()))
-        node.updateOrigin(child.getValue());
-      ret.add(name);
+  GitFileEntry findOrigin(String name) throws IOException {
+    GitFileEntry origin = this.origin;
+    if(!origin.isSubtree())
+      return missingEntry();
+    TreeSnapshot snapshot = this.snapshot;
+    if(snapshot != null && origin.getId().equals(snapshot.getId()))
+      return snapshot.getChild(name);
+    DirectoryChildren children = data;
+    if(children != null && origin.getId().equals(children.getSourceId()))
+      return children.findSourceEntry(name);
+    DirectoryChildren origins = this.origins;
+    if(origins == null || !origin.getId().equals(origins.getSourceId())) {
+      origins = DirectoryChildren.fromRawTree(origin.getId(), objService.readRawTree(origin.getId()));
+      this.origins = origins;
     }
-    return unmodifiableSet(ret);
+    return origins.findSourceEntry(name);
   }
 
   @Nonnull
-  private Collection<Node> findNotUpdatedChildren(Set<String> updatedChildren) throws IOException{
-    List<Node> ret = new ArrayList<>();
-    for(Map.Entry<String, Node> child : data.entrySet()) {
-      String name = child.getKey();
-      if(!updatedChildren.contains(name))
-        ret.add(child.getValue());
+  private static GitFileEntry currentEntryOf(Node node) throws IOException {
+    ObjectId id = node.getObjectId(false);
+    return isTrivial(id) ? missingEntry() : newEntry(id, node.getMode());
+  }
+
+  private void structureChanged(@Nullable RootNode root, String name, GitFileEntry origin) {
+    if(root != null) {
+      root.updateStructureVersion();
+      root.recordChange(this, name, origin);
     }
-    return unmodifiableList(ret);
+  }
+
+  private void structureChanged() {
+    Node current = this;
+    while(current.parent != null)
+      current = current.parent;
+    if(current instanceof RootNode)
+      ((RootNode) current).updateStructureVersion();
   }
 
   private void updateOriginsToTrivial(Collection<Node> nodes) throws IOException {
@@ -214,11 +455,21 @@ public class DirectoryNode extends Node<TreeSnapshot, Map<String, Node>> {
     }
   }
 
+  @Override
+  protected synchronized void reset(GitFileEntry entry) {
+    if(isInitialized()) {
+      for(Node child : data.nodes())
+        child.exile();
+    }
+    super.reset(entry);
+    structureChanged();
+  }
+
   @Override
   protected void exile() {
     super.exile();
     if(isInitialized()) {
-      for(Node child : data.values())
+      for(Node child : data.nodes())
         child.exile();
     }
   }
@@ -1,20 +1,26 @@
 package com.beijunyi.parallelgit.filesystem.io;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.beijunyi.parallelgit.filesystem.exceptions.IncompatibleFileModeException;
 import com.beijunyi.parallelgit.utils.io.BlobSnapshot;
+import com.beijunyi.parallelgit.utils.io.GitFileEntry;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 
+import static com.beijunyi.parallelgit.utils.io.GitFileEntry.newEntry;
 import static org.eclipse.jgit.lib.FileMode.*;
 
 public class FileNode extends Node<BlobSnapshot, byte[]> {
 
   private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
 
-  private long size = -1;
+  private volatile long size = -1;
+  private long dirtyBytes = 0;
 
   private FileNode(ObjectId id, FileMode mode, DirectoryNode parent) {
     super(id, mode, parent);
@@ -24,18 +30,16 @@ public class FileNode extends Node<BlobSnapshot, byte[]> {
     super(mode, parent);
   }
 
-  private FileNode(byte[] bytes, FileMode mode, DirectoryNode parent) {
-    super(bytes, mode, parent);
-  }
-
   @Nonnull
   protected static FileNode fromBlob(ObjectId id, FileMode mode, DirectoryNode parent) {
     return new FileNode(id, mode, parent);
   }
 
   @Nonnull
-  public static FileNode fromBytes(byte[] bytes, FileMode mode, DirectoryNode parent) {
-    return new FileNode(bytes, mode, parent);
+  public static FileNode fromBytes(byte[] bytes, FileMode mode, DirectoryNode parent) throws IOException {
+    FileNode ret = new FileNode(mode, parent);
+    ret.setBytes(bytes);
+    return ret;
   }
 
   @Nonnull
@@ -54,10 +58,27 @@ public class FileNode extends Node<BlobSnapshot, byte[]> {
   }
 
   public long getSize() throws IOException {
-    if(size != -1)
-      return size;
-    size = id != null ? objService.getBlobSize(id) : 0;
-    return size;
+    long ret = size;
+    if(ret != -1)
+      return ret;
+    DirectoryNode parent = this.parent;
+    if(id != null && parent != null)
+      parent.prefetchSizes();
+    return loadSize();
+  }
+
+  public boolean isLarge() throws IOException {
+    return !isInitialized() && id != null && loadSize() > objService.getLargeFileThreshold();
+  }
+
+  @Nullable
+  ObjectId getUnsizedBlob() {
+    return size == -1 && !GITLINK.equals(mode) ? id : null;
+  }
+
+  synchronized void fillSize(ObjectId blob, long size) {
+    if(this.size == -1 && blob.equals(id))
+      this.size = size;
   }
 
   @Nonnull
@@ -72,6 +93,11 @@ public class FileNode extends Node<BlobSnapshot, byte[]> {
     return snapshot.getData();
   }
 
+  @Override
+  protected long weigh(byte[] data) {
+    return data.length;
+  }
+
   @Override
   protected boolean isTrivial(byte[] data) {
     return false;
@@ -87,10 +113,10 @@ public class FileNode extends Node<BlobSnapshot, byte[]> {
   @Override
   public Node clone(DirectoryNode parent) throws IOException {
     FileNode ret;
-    if(isInitialized()) {
+    byte[] bytes = data;
+    if(bytes != null) {
       ret = newFile(mode, parent);
-      ret.data = data;
-      ret.size = data.length;
+      ret.setBytes(bytes);
     } else if(id != null) {
       ret = FileNode.fromBlob(id , mode, parent);
       parent.getObjectService().pullObject(id, objService);
@@ -99,11 +125,117 @@ public class FileNode extends Node<BlobSnapshot, byte[]> {
     return ret;
   }
 
-  public void setBytes(byte[] bytes) {
+  @Nonnull
+  @Override
+  protected synchronized Node fork(DirectoryNode parent) throws IOException {
+    FileNode ret;
+    if(data == null)
+      ret = fromBlob(id, mode, parent);
+    else if(id == null) {
+      ret = newFile(mode, parent);
+      ret.setBytes(data);
+    } else {
+      ret = newFile(mode, parent);
+      ret.data = data;
+      ret.size = data.length;
+      ret.id = id;
+      if(dirtyBytes != 0)
+        ret.shareDirtyBytes(data, id);
+    }
+    ret.origin = origin;
+    return ret;
+  }
+
+  private long loadSize() throws IOException {
+    long ret = size;
+    if(ret != -1)
+      return ret;
+    ret = id != null ? objService.getBlobSize(id) : 0;
+    size = ret;
+    return ret;
+  }
+
+  public void setBytes(byte[] bytes) throws IOException {
+    ObjectId blob;
+    synchronized(this) {
+      updateBytes(bytes);
+      if(objService.reserveDirtyBytes(bytes.length)) {
+        dirtyBytes = bytes.length;
+        return;
+      }
+      blob = objService.write(BlobSnapshot.capture(bytes));
+      id = blob;
+    }
+    if(objService.getSpilledFiles().add(this, blob, bytes.length))
+      objService.flush();
+  }
+
+  private void shareDirtyBytes(byte[] bytes, ObjectId blob) throws IOException {
+    synchronized(this) {
+      if(objService.reserveDirtyBytes(bytes.length)) {
+        dirtyBytes = bytes.length;
+        return;
+      }
+      objService.write(BlobSnapshot.capture(bytes));
+    }
+    if(objService.getSpilledFiles().add(this, blob, bytes.length))
+      objService.flush();
+  }
+
+  synchronized void updateBytes(byte[] bytes) {
+    releaseDirtyBytes();
     this.data = bytes;
     this.size = bytes.length;
-    id = null;
-    invalidateParentCache();
+    RootNode root = invalidate();
+    if(root != null) root.recordChange(this);
+  }
+
+  synchronized void updateBlob(ObjectId blob, long size) {
+    reset(newEntry(blob, mode));
+    this.size = size;
+  }
+
+  @Nonnull
+  InputStream openStream() throws IOException {
+    byte[] bytes = data;
+    ObjectId id = this.id;
+    if(bytes == null && id != null)
+      return objService.open(id).openStream();
+    return new ByteArrayInputStream(bytes != null ? bytes : getData());
+  }
+
+  @Nullable
+  @Override
+  protected BlobSnapshot takeSnapshot(boolean persist) throws IOException {
+    BlobSnapshot ret = super.takeSnapshot(persist);
+    if(persist)
+      releaseDirtyBytes();
+    return ret;
+  }
+
+  @Override
+  protected synchronized void reset(GitFileEntry entry) {
+    super.reset(entry);
+    size = -1;
+    releaseDirtyBytes();
+  }
+
+  @Override
+  protected void exile() {
+    super.exile();
+    releaseDirtyBytes();
+  }
+
+  synchronized void dropSpilledData(ObjectId blob) {
+    if(blob.equals(id))
+      data = null;
+  }
+
+  private synchronized void releaseDirtyBytes() {
+    if(dirtyBytes != 0) {
+      objService.releaseDirtyBytes(dirtyBytes);
+      dirtyBytes = 0;
+    }
   }
 
   protected void checkFileMode(FileMode proposed) {
@@ -0,0 +1,138 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+import com.beijunyi.parallelgit.filesystem.GfsObjectService;
+import org.eclipse.jgit.lib.ObjectId;
+
+public class GfsBlobStreamChannel implements SeekableByteChannel {
+
+  private static final int TRANSFER_BUFFER_SIZE = 8192;
+
+  private final GfsObjectService objService;
+  private final ObjectId id;
+  private final long size;
+  private InputStream stream;
+  private long streamPosition;
+  private long position;
+  private volatile boolean closed = false;
+
+  GfsBlobStreamChannel(GfsObjectService objService, ObjectId id, long size) {
+    this.objService = objService;
+    this.id = id;
+    this.size = size;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    checkClosed();
+    synchronized(this) {
+      if(position >= size)
+        return -1;
+      int length = (int) Math.min(dst.remaining(), size - position);
+      if(length == 0)
+        return 0;
+      seekStream();
+      int read;
+      if(dst.hasArray()) {
+        read = stream.read(dst.array(), dst.arrayOffset() + dst.position(), length);
+        if(read > 0) dst.position(dst.position() + read);
+      } else {
+        byte[] bytes = new byte[Math.min(length, TRANSFER_BUFFER_SIZE)];
+        read = stream.read(bytes);
+        if(read > 0) dst.put(bytes, 0, read);
+      }
+      if(read < 0)
+        return -1;
+      position += read;
+      streamPosition += read;
+      return read;
+    }
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    checkClosed();
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public long position() throws IOException {
+    checkClosed();
+    return position;
+  }
+
+  @Override
+  public GfsBlobStreamChannel position(long newPosition) throws IOException {
+    checkClosed();
+    if(newPosition < 0)
+      throw new IllegalArgumentException("Position must not be negative: " + newPosition);
+    synchronized(this) {
+      position = newPosition;
+    }
+    return this;
+  }
+
+  @Override
+  public long size() throws IOException {
+    checkClosed();
+    return size;
+  }
+
+  @Override
+  public GfsBlobStreamChannel truncate(long size) throws IOException {
+    checkClosed();
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return !closed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(closed)
+      return;
+    synchronized(this) {
+      if(!closed) {
+        closed = true;
+        closeStream();
+      }
+    }
+  }
+
+  private void seekStream() throws IOException {
+    if(stream == null || position < streamPosition) {
+      closeStream();
+      stream = objService.open(id).openStream();
+      streamPosition = 0;
+    }
+    while(streamPosition < position) {
+      long skipped = stream.skip(position - streamPosition);
+      if(skipped <= 0) {
+        if(stream.read() < 0)
+          throw new IOException("Unexpected end of blob " + id.getName());
+        skipped = 1;
+      }
+      streamPosition += skipped;
+    }
+  }
+
+  private void closeStream() throws IOException {
+    if(stream != null) {
+      stream.close();
+      stream = null;
+    }
+  }
+
+  private void checkClosed() throws ClosedChannelException {
+    if(!isOpen()) throw new ClosedChannelException();
+  }
+
+}
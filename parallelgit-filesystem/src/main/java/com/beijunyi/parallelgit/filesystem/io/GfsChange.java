@@ -16,6 +16,6 @@ public abstract class GfsChange {
   }
 
   @Nullable
-  protected abstract Node convertNode(@Nullable Node node, DirectoryNode parent);
+  protected abstract Node convertNode(@Nullable Node node, DirectoryNode parent) throws IOException;
 
 }
@@ -2,34 +2,40 @@ package com.beijunyi.parallelgit.filesystem.io;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.beijunyi.parallelgit.filesystem.GitFileSystem;
 import com.beijunyi.parallelgit.utils.io.GitFileEntry;
 import org.eclipse.jgit.lib.FileMode;
 
-import static com.beijunyi.parallelgit.filesystem.utils.GfsPathUtils.*;
+import static com.beijunyi.parallelgit.filesystem.utils.GfsForkJoinUtils.invokeAll;
 
 public class GfsChangesCollector {
 
   private static final GfsChange DELETE_NODE = new DeleteNode();
   private static final GfsChange PREPARE_DIRECTORY = new MakeDirectory();
+  private static final int FORK_THRESHOLD = 64;
 
-  private final Map<String, GfsChange> changes = new HashMap<>();
-  private final Map<String, Set<String>> changedDirs = new HashMap<>();
-
-  private final Queue<DirectoryNode> dirs = new LinkedList<>();
-  private final Queue<String> paths = new LinkedList<>();
+  private final ChangeNode root = new ChangeNode();
 
   public boolean isEmpty() {
-    return changes.isEmpty();
+    return root.size == 0;
   }
 
   public void addChange(String path, GfsChange change) {
-    if(changes.containsKey(path))
-      throw new IllegalStateException();
-    changes.put(path, change);
-    addChangedDirectory(path);
+    ChangeNode node = root;
+    node.size++;
+    for(int start = 1, end; start < path.length(); start = end + 1) {
+      end = path.indexOf('/', start);
+      if(end < 0)
+        end = path.length();
+      node = node.child(path.substring(start, end));
+      node.size++;
+    }
+    node.setChange(change);
   }
 
   public void addChange(String path, GitFileEntry entry) {
@@ -47,59 +53,79 @@ public class GfsChangesCollector {
     addChange(path, new UpdateFile(bytes, mode));
   }
 
+  public void addAll(GfsChangesCollector other) {
+    root.merge(other.root);
+  }
+
   public void applyTo(GitFileSystem gfs) throws IOException {
-    dirs.add(gfs.getFileStore().getRoot());
-    paths.add("/");
-    while(!dirs.isEmpty()) {
-      DirectoryNode dir = dirs.poll();
-      String path = paths.poll();
-      applyChangesToDir(dir, path);
-    }
+    applyTo(gfs.getFileStore().getRoot(), root, gfs.getObjectService().getFlushPool());
   }
 
-  private void addChangedDirectory(String path) {
-    if(isRoot(path))
-      return;
-    int parentLength = path.lastIndexOf('/');
-    if(parentLength >= 0) {
-      String parent = path.substring(0, parentLength == 0 ? 1 : parentLength);
-      String filename = path.substring(parentLength + 1);
-      Set<String> siblings = childrenOf(parent);
-      if(siblings.add(filename))
-        addChangedDirectory(parent);
+  private static void applyTo(DirectoryNode dir, ChangeNode changes, @Nullable final ForkJoinPool pool) throws IOException {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for(Map.Entry<String, ChangeNode> child : changes.children.entrySet()) {
+      String name = child.getKey();
+      final ChangeNode node = child.getValue();
+      if(node.change != null)
+        node.change.applyTo(dir, name);
+      if(node.children.isEmpty())
+        continue;
+      final DirectoryNode subDir = prepareSubDirectory(name, dir);
+      if(pool == null || node.size < FORK_THRESHOLD) {
+        applyTo(subDir, node, pool);
+        continue;
+      }
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          applyTo(subDir, node, pool);
+          return null;
+        }
+      });
     }
+    invokeAll(pool, tasks);
   }
 
   @Nonnull
-  private Set<String> childrenOf(String parent) {
-    Set<String> ret = changedDirs.get(parent);
-    if(ret == null) {
-      ret = new HashSet<>();
-      changedDirs.put(parent, ret);
+  private static DirectoryNode prepareSubDirectory(String childName, DirectoryNode dir) throws IOException {
+    DirectoryNode child = (DirectoryNode) dir.getChild(childName);
+    if(child == null) {
+      child = DirectoryNode.newDirectory(dir);
+      dir.addChild(childName, child, false);
     }
-    return ret;
+    return child;
   }
 
-  private void applyChangesToDir(DirectoryNode dir, String path) throws IOException {
-    String prefix = addTrailingSlash(path);
-    for(String childName : childrenOf(path)) {
-      String childPath = prefix + childName;
-      GfsChange change = changes.get(childPath);
-      if(change != null)
-        change.applyTo(dir, childName);
-      if(changedDirs.containsKey(childPath))
-        addSubDirectoryToQueue(childPath, childName, dir);
+  private static class ChangeNode {
+
+    private final Map<String, ChangeNode> children = new HashMap<>();
+    private GfsChange change;
+    private int size;
+
+    @Nonnull
+    private ChangeNode child(String name) {
+      ChangeNode ret = children.get(name);
+      if(ret == null) {
+        ret = new ChangeNode();
+        children.put(name, ret);
+      }
+      return ret;
     }
-  }
 
-  private void addSubDirectoryToQueue(String childPath, String childName, DirectoryNode dir) throws IOException {
-    DirectoryNode child = (DirectoryNode) dir.getChild(childName);
-    if(child == null) {
-      child = DirectoryNode.newDirectory(dir);
-      dir.addChild(childName, child, false);
+    private void setChange(GfsChange change) {
+      if(this.change != null)
+        throw new IllegalStateException();
+      this.change = change;
+    }
+
+    private void merge(ChangeNode other) {
+      if(other.change != null)
+        setChange(other.change);
+      for(Map.Entry<String, ChangeNode> child : other.children.entrySet())
+        child(child.getKey()).merge(child.getValue());
+      size += other.size;
     }
-    dirs.add(child);
-    paths.add(childPath);
+
   }
 
 }
@@ -23,6 +23,13 @@ public class GfsCheckoutChangesCollector extends GfsChangesCollector {
       throw new GfsCheckoutConflictException(conflict);
   }
 
+  @Override
+  public void addAll(GfsChangesCollector other) {
+    super.addAll(other);
+    if(other instanceof GfsCheckoutChangesCollector)
+      conflicts.putAll(((GfsCheckoutChangesCollector) other).conflicts);
+  }
+
   public boolean hasConflicts() {
     return !conflicts.isEmpty();
   }
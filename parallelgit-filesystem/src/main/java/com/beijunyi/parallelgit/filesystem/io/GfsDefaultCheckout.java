@@ -2,7 +2,10 @@ package com.beijunyi.parallelgit.filesystem.io;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.beijunyi.parallelgit.filesystem.GfsStatusProvider;
 import com.beijunyi.parallelgit.filesystem.GitFileSystem;
@@ -15,7 +18,9 @@ import org.eclipse.jgit.treewalk.*;
 
 import static com.beijunyi.parallelgit.filesystem.io.GfsCheckoutConflict.threeWayConflict;
 import static com.beijunyi.parallelgit.filesystem.io.GfsTreeIterator.iterateRoot;
+import static com.beijunyi.parallelgit.filesystem.utils.GfsForkJoinUtils.invokeAll;
 import static com.beijunyi.parallelgit.filesystem.utils.GfsPathUtils.toAbsolutePath;
+import static org.eclipse.jgit.lib.FileMode.TREE;
 
 public class GfsDefaultCheckout {
 
@@ -26,6 +31,7 @@ public class GfsDefaultCheckout {
   private final GitFileSystem gfs;
   private final GfsStatusProvider status;
   private final ObjectReader reader;
+  private final boolean failOnConflict;
   protected final GfsCheckoutChangesCollector changes;
 
   private Set<String> ignoredFiles;
@@ -34,6 +40,7 @@ public class GfsDefaultCheckout {
     this.gfs = gfs;
     this.status = gfs.getStatusProvider();
     this.reader = gfs.getRepository().newObjectReader();
+    this.failOnConflict = failOnConflict;
     changes = new GfsCheckoutChangesCollector(failOnConflict);
   }
 
@@ -52,8 +59,15 @@ public class GfsDefaultCheckout {
   }
 
   public void checkout(AbstractTreeIterator iterator) throws IOException {
-    TreeWalk tw = prepareTreeWalk(iterator);
-    collectChanges(tw);
+    ForkJoinPool pool = gfs.getObjectService().getFlushPool();
+    List<Callable<GfsCheckoutChangesCollector>> subtrees = pool != null && iterator instanceof CanonicalTreeParser ? new ArrayList<Callable<GfsCheckoutChangesCollector>>() : null;
+    try(TreeWalk tw = prepareTreeWalk(iterator)) {
+      collectChanges(tw, changes, subtrees);
+    }
+    if(subtrees != null) {
+      for(GfsCheckoutChangesCollector collected : invokeAll(pool, subtrees))
+        changes.addAll(collected);
+    }
     if(!hasConflicts())
       applyChanges();
   }
@@ -93,7 +107,7 @@ public class GfsDefaultCheckout {
     return ret;
   }
 
-  private void collectChanges(TreeWalk tw) throws IOException {
+  private void collectChanges(TreeWalk tw, GfsCheckoutChangesCollector collector, @Nullable List<Callable<GfsCheckoutChangesCollector>> subtrees) throws IOException {
     while(tw.next()) {
       String path = toAbsolutePath(tw.getPathString());
       if(skips(path))
@@ -101,18 +115,54 @@ public class GfsDefaultCheckout {
       GitFileEntry head = GitFileEntry.newEntry(tw, HEAD);
       GitFileEntry target = GitFileEntry.newEntry(tw, TARGET);
       GitFileEntry worktree = GitFileEntry.newEntry(tw, WORKTREE);
-      if(mergeEntries(path, head, target, worktree)) tw.enterSubtree();
+      if(mergeEntries(path, head, target, worktree, collector)) {
+        if(subtrees != null)
+          subtrees.add(collectSubtree(detachSubtree(tw)));
+        else
+          tw.enterSubtree();
+      }
+    }
+  }
+
+  @Nonnull
+  private AbstractTreeIterator[] detachSubtree(TreeWalk tw) throws IOException {
+    byte[] prefix = tw.getRawPath();
+    AbstractTreeIterator[] ret = new AbstractTreeIterator[tw.getTreeCount()];
+    for(int i = 0; i < ret.length; i++) {
+      if(!TREE.equals(tw.getFileMode(i)))
+        ret[i] = new EmptyTreeIterator();
+      else if(i == WORKTREE)
+        ret[i] = tw.getTree(i, GfsTreeIterator.class).createDetachedSubtreeIterator(reader);
+      else
+        ret[i] = new CanonicalTreeParser(prefix, reader, tw.getObjectId(i));
     }
+    return ret;
+  }
+
+  @Nonnull
+  private Callable<GfsCheckoutChangesCollector> collectSubtree(final AbstractTreeIterator[] trees) {
+    return new Callable<GfsCheckoutChangesCollector>() {
+      @Override
+      public GfsCheckoutChangesCollector call() throws IOException {
+        GfsCheckoutChangesCollector ret = new GfsCheckoutChangesCollector(failOnConflict);
+        try(TreeWalk tw = new NameConflictTreeWalk(gfs.getRepository())) {
+          for(AbstractTreeIterator tree : trees)
+            tw.addTree(tree);
+          collectChanges(tw, ret, null);
+        }
+        return ret;
+      }
+    };
   }
 
-  private boolean mergeEntries(String path, GitFileEntry head, GitFileEntry target, GitFileEntry worktree) throws IOException {
+  private boolean mergeEntries(String path, GitFileEntry head, GitFileEntry target, GitFileEntry worktree, GfsCheckoutChangesCollector collector) throws IOException {
     if(target.equals(worktree) || target.equals(head)) return false;
     if(head.equals(worktree)) {
-      changes.addChange(path, target);
+      collector.addChange(path, target);
       return target.isVirtualSubtree();
     }
     if(target.isSubtree() && worktree.isSubtree()) return true;
-    changes.addConflict(threeWayConflict(path, head, target, worktree));
+    collector.addConflict(threeWayConflict(path, head, target, worktree));
     return false;
   }
 
@@ -2,10 +2,10 @@ package com.beijunyi.parallelgit.filesystem.io;
 
 import java.io.IOException;
 import java.nio.file.ClosedDirectoryStreamException;
+import java.nio.file.DirectoryIteratorException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -15,34 +15,35 @@ import com.beijunyi.parallelgit.filesystem.GitPath;
 public class GfsDirectoryStream implements DirectoryStream<Path> {
 
   private final GitPath parent;
-  private final List<String> children;
+  private final DirectoryChildren children;
   private final Filter<? super Path> filter;
   private volatile boolean closed = false;
 
   public GfsDirectoryStream(DirectoryNode dir, GitPath parent, @Nullable Filter<? super Path> filter) throws IOException {
     this.parent = parent;
     this.filter = filter;
-    children = dir.listChildren();
+    children = dir.getData();
   }
 
   @Nonnull
   @Override
   public Iterator<Path> iterator() {
-    final Iterator<String> childrenIt = children.iterator();
     return new Iterator<Path>() {
 
+      private int index;
       private Path next;
 
       private boolean findNext() {
-        while(childrenIt.hasNext()) {
-          String child = childrenIt.next();
-          GitPath childPath = parent.resolve(child);
+        while(index < children.size()) {
+          GitPath childPath = parent.resolveChild(children.getName(index), children.getNode(index));
+          index++;
           try {
             if(filter == null || filter.accept(childPath)) {
               next = childPath;
               return true;
             }
-          } catch(IOException ignore) {
+          } catch(IOException e) {
+            throw new DirectoryIteratorException(e);
           }
         }
         return false;
@@ -59,7 +59,7 @@ public abstract class GfsFileAttributeView implements FileAttributeView {
 
     public static final String BASIC_VIEW = "basic";
     public static final Set<String> BASIC_KEYS = keys();
-    private static final FileTime EPOCH = fromMillis(0);
+    static final FileTime EPOCH = fromMillis(0);
 
     protected Basic(Node node) {
       super(node);
@@ -74,7 +74,7 @@ public abstract class GfsFileAttributeView implements FileAttributeView {
     @Nonnull
     @Override
     public BasicFileAttributes readAttributes() throws IOException {
-      return new GfsFileAttributes.Basic(this);
+      return new GfsFileAttributes.Basic(node);
     }
 
     @Override
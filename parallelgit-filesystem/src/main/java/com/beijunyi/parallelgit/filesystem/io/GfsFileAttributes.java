@@ -10,7 +10,7 @@ import javax.annotation.Nullable;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 
-import static com.beijunyi.parallelgit.filesystem.io.GfsFileAttributeView.Basic.BASIC_KEYS;
+import static com.beijunyi.parallelgit.filesystem.io.GfsFileAttributeView.Basic.EPOCH;
 import static com.beijunyi.parallelgit.filesystem.io.GfsFileAttributeView.*;
 import static com.beijunyi.parallelgit.filesystem.io.GfsFileAttributeView.Git.GIT_KEYS;
 import static com.beijunyi.parallelgit.filesystem.io.GfsFileAttributeView.Posix.POSIX_KEYS;
@@ -41,8 +41,16 @@ public abstract class GfsFileAttributes {
       fileKey = attributes.get(FILE_KEY_NAME);
     }
 
-    Basic(GfsFileAttributeView view) throws IOException {
-      this(view.readAttributes(BASIC_KEYS));
+    Basic(Node node) throws IOException {
+      lastModifiedTime = EPOCH;
+      lastAccessTime = EPOCH;
+      creationTime = EPOCH;
+      isRegularFile = node.isRegularFile();
+      isDirectory = node.isDirectory();
+      isSymbolicLink = node.isSymbolicLink();
+      isOther = false;
+      size = node.getSize();
+      fileKey = null;
     }
 
     @Nonnull
@@ -0,0 +1,97 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.OpenOption;
+import java.util.Collection;
+
+import com.beijunyi.parallelgit.filesystem.GfsObjectService;
+import org.eclipse.jgit.lib.ObjectId;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+
+public class GfsFileOutputStream extends OutputStream {
+
+  private static final int PENDING_BYTES_SIZE = 8192;
+
+  private final FileNode file;
+  private final ChunkedByteBuffer buffer;
+  private byte[] pending;
+  private int pendingCount;
+  private int position;
+  private volatile boolean closed = false;
+
+  GfsFileOutputStream(FileNode file, Collection<? extends OpenOption> options) throws IOException {
+    this.file = file;
+    buffer = options.contains(TRUNCATE_EXISTING) ? new ChunkedByteBuffer() : new ChunkedByteBuffer(file.getData());
+    if(options.contains(APPEND)) position = buffer.size();
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    checkClosed();
+    synchronized(this) {
+      if(pending == null)
+        pending = new byte[PENDING_BYTES_SIZE];
+      else if(pendingCount == pending.length)
+        writePending();
+      pending[pendingCount++] = (byte) b;
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkClosed();
+    synchronized(this) {
+      writePending();
+      position += buffer.write(position, ByteBuffer.wrap(b, off, len));
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    checkClosed();
+    synchronized(this) {
+      writePending();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(closed)
+      return;
+    synchronized(this) {
+      if(!closed) {
+        writePending();
+        closed = true;
+        GfsObjectService objService = file.getObjectService();
+        int size = buffer.size();
+        if(size > objService.getLargeFileThreshold()) {
+          ObjectId blob;
+          try(InputStream in = buffer.openStream()) {
+            blob = objService.insertBlob(size, in);
+          }
+          objService.flush();
+          file.updateBlob(blob, size);
+        } else {
+          file.setBytes(buffer.toByteArray());
+        }
+      }
+    }
+  }
+
+  private void writePending() {
+    if(pendingCount > 0) {
+      position += buffer.write(position, ByteBuffer.wrap(pending, 0, pendingCount));
+      pendingCount = 0;
+    }
+  }
+
+  private void checkClosed() throws IOException {
+    if(closed) throw new IOException("Stream closed");
+  }
+
+}
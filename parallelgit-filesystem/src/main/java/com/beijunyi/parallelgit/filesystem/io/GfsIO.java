@@ -1,10 +1,14 @@
 package com.beijunyi.parallelgit.filesystem.io;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileAttributeView;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -30,15 +34,10 @@ public final class GfsIO {
   @Nullable
   private static Node findNode(GitPath path) throws IOException {
     if(!path.isAbsolute()) throw new IllegalArgumentException(path.toString());
-    Node current = path.getFileStore().getRoot();
-    for(int i = 0; i < path.getNameCount(); i++) {
-      GitPath name = path.getName(i);
-      if(current instanceof DirectoryNode)
-        current = ((DirectoryNode) current).getChild(name.toString());
-      else
-        return null;
-    }
-    return current;
+    RootNode root = path.getFileStore().getRoot();
+    Node node = path.getNode();
+    if(node != null && node.isAttachedTo(root)) return node;
+    return root.findNode(path.getBytes());
   }
 
   @Nonnull
@@ -79,24 +78,40 @@ public final class GfsIO {
   }
 
   @Nonnull
-  public static GfsSeekableByteChannel newByteChannel(GitPath file, Set<? extends OpenOption> options, Collection<? extends FileAttribute> attrs) throws IOException {
+  private static FileNode openFile(GitPath file, Set<? extends OpenOption> options, Collection<? extends FileAttribute> attrs) throws IOException {
     if(file.isRoot()) throw new AccessDeniedException(file.toString());
-    FileNode node;
     if(options.contains(CREATE) || options.contains(CREATE_NEW)) {
       DirectoryNode parent = findDirectory(getParent(file));
       String name = getFileName(file);
       if(options.contains(CREATE_NEW) || !parent.hasChild(name)) {
-        node = newFile(FileAttributeReader.read(attrs).isExecutable(), parent);
+        FileNode node = newFile(FileAttributeReader.read(attrs).isExecutable(), parent);
         if(!parent.addChild(name, node, false)) throw new FileAlreadyExistsException(file.toString());
-      } else {
-        node = asFile(parent.getChild(name), file);
+        return node;
       }
-    } else {
-      node = findFile(file);
+      return asFile(parent.getChild(name), file);
     }
+    return findFile(file);
+  }
+
+  @Nonnull
+  public static SeekableByteChannel newByteChannel(GitPath file, Set<? extends OpenOption> options, Collection<? extends FileAttribute> attrs) throws IOException {
+    FileNode node = openFile(file, options, attrs);
+    if(!options.contains(WRITE) && node.isLarge())
+      return new GfsBlobStreamChannel(node.getObjectService(), node.getObjectId(false), node.getSize());
     return new GfsSeekableByteChannel(node, options);
   }
 
+  @Nonnull
+  public static InputStream newInputStream(GitPath file) throws IOException {
+    if(file.isRoot()) throw new AccessDeniedException(file.toString());
+    return findFile(file).openStream();
+  }
+
+  @Nonnull
+  public static OutputStream newOutputStream(GitPath file, Set<? extends OpenOption> options) throws IOException {
+    return new GfsFileOutputStream(openFile(file, options, Collections.<FileAttribute>emptySet()), options);
+  }
+
   @Nonnull
   public static GfsDirectoryStream newDirectoryStream(GitPath dir, @Nullable DirectoryStream.Filter<? super Path> filter) throws IOException {
     return new GfsDirectoryStream(findDirectory(dir), dir, filter);
@@ -7,7 +7,6 @@ import java.nio.file.OpenOption;
 import java.util.Collection;
 import javax.annotation.Nonnull;
 
-import static java.lang.System.arraycopy;
 import static java.nio.file.StandardOpenOption.*;
 
 public class GfsSeekableByteChannel implements SeekableByteChannel {
@@ -15,15 +14,16 @@ public class GfsSeekableByteChannel implements SeekableByteChannel {
   private final FileNode file;
   private final boolean readable;
   private final boolean writable;
-  private ByteBuffer buffer;
+  private final ChunkedByteBuffer buffer;
+  private int position;
   private volatile boolean closed = false;
 
   GfsSeekableByteChannel(FileNode file, Collection<? extends OpenOption> options) throws IOException {
     this.file = file;
-    buffer = ByteBuffer.wrap(options.contains(TRUNCATE_EXISTING) ? new byte[0] : file.getData());
+    buffer = options.contains(TRUNCATE_EXISTING) ? new ChunkedByteBuffer() : new ChunkedByteBuffer(file.getData());
     readable = options.contains(READ);
     writable = options.contains(WRITE);
-    if(options.contains(APPEND)) buffer.position(buffer.limit());
+    if(options.contains(APPEND)) position = buffer.size();
   }
 
   @Override
@@ -31,7 +31,12 @@ public class GfsSeekableByteChannel implements SeekableByteChannel {
     checkClosed();
     checkReadAccess();
     synchronized(this) {
-      return copyBytes(dst, buffer);
+      if(!dst.hasRemaining())
+        return 0;
+      int n = buffer.read(position, dst);
+      if(n > 0)
+        position += n;
+      return n;
     }
   }
 
@@ -40,21 +45,16 @@ public class GfsSeekableByteChannel implements SeekableByteChannel {
     checkClosed();
     checkWriteAccess();
     synchronized(this) {
-      if(buffer.remaining() < src.remaining()) {
-        int position = buffer.position();
-        byte[] bytes = new byte[position + src.remaining()];
-        arraycopy(buffer.array(), 0, bytes, 0, position);
-        buffer = ByteBuffer.wrap(bytes);
-        buffer.position(position);
-      }
-      return copyBytes(buffer, src);
+      int n = buffer.write(position, src);
+      position += n;
+      return n;
     }
   }
 
   @Override
-  public long position() throws ClosedChannelException {
+  public synchronized long position() throws ClosedChannelException {
     checkClosed();
-    return buffer.position();
+    return position;
   }
 
   private static int toInt(long num) {
@@ -67,15 +67,15 @@ public class GfsSeekableByteChannel implements SeekableByteChannel {
   public GfsSeekableByteChannel position(long newPosition) throws ClosedChannelException {
     checkClosed();
     synchronized(this) {
-      buffer.position(toInt(newPosition));
+      position = toInt(newPosition);
     }
     return this;
   }
 
   @Override
-  public long size() throws ClosedChannelException {
+  public synchronized long size() throws ClosedChannelException {
     checkClosed();
-    return buffer.limit();
+    return buffer.size();
   }
 
   @Override
@@ -83,7 +83,8 @@ public class GfsSeekableByteChannel implements SeekableByteChannel {
     checkClosed();
     checkWriteAccess();
     synchronized(this) {
-      buffer.limit(toInt(size));
+      buffer.truncate(toInt(size));
+      position = Math.min(position, buffer.size());
     }
     return this;
   }
@@ -94,23 +95,19 @@ public class GfsSeekableByteChannel implements SeekableByteChannel {
   }
 
   @Nonnull
-  public byte[] getBytes() {
-    synchronized(this) {
-      byte[] bytes = new byte[buffer.limit()];
-      arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
-      return bytes;
-    }
-
+  synchronized byte[] getBytes() {
+    return buffer.toByteArray();
   }
 
   @Override
-  public void close() {
+  public void close() throws IOException {
     if(closed)
       return;
     synchronized(this) {
       if(!closed) {
         closed = true;
-        file.setBytes(getBytes());
+        if(writable)
+          file.setBytes(getBytes());
       }
     }
   }
@@ -127,11 +124,4 @@ public class GfsSeekableByteChannel implements SeekableByteChannel {
     if(!writable) throw new NonWritableChannelException();
   }
 
-  private static int copyBytes(ByteBuffer dst, ByteBuffer src) {
-    int remaining = Math.min(src.remaining(), dst.remaining());
-    for(int i = 0; i < remaining; i++)
-      dst.put(src.get());
-    return remaining;
-  }
-
 }
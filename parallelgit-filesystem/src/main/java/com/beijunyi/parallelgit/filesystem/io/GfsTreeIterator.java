@@ -7,11 +7,13 @@ import javax.annotation.Nullable;
 
 import com.beijunyi.parallelgit.filesystem.GfsFileStore;
 import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import com.beijunyi.parallelgit.utils.io.GitFileEntry;
 import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.WorkingTreeIterator;
 import org.eclipse.jgit.treewalk.WorkingTreeOptions;
 
@@ -22,23 +24,26 @@ import static org.eclipse.jgit.lib.Constants.*;
 public class GfsTreeIterator extends WorkingTreeIterator {
 
   private final List<GfsTreeEntry> files;
+  private final CanonicalTreeParser tree;
+  private final byte[] idBuffer = new byte[OBJECT_ID_LENGTH];
   private int index = -1;
-  private ObjectId id;
 
-  private GfsTreeIterator(List<GfsTreeEntry> files, GfsTreeIterator parent) {
+  private GfsTreeIterator(@Nullable List<GfsTreeEntry> files, @Nullable CanonicalTreeParser tree, GfsTreeIterator parent) {
     super(parent);
     this.files = files;
-    next(1);
+    this.tree = tree;
+    start();
   }
 
-  private GfsTreeIterator(List<GfsTreeEntry> files) {
-    super((WorkingTreeOptions) null);
+  private GfsTreeIterator(@Nullable List<GfsTreeEntry> files, @Nullable CanonicalTreeParser tree, @Nullable String prefix) {
+    super(prefix, null);
     this.files = files;
-    next(1);
+    this.tree = tree;
+    start();
   }
 
   private GfsTreeIterator(DirectoryNode node) throws IOException {
-    this(GfsTreeEntry.listChildren(node));
+    this(GfsTreeEntry.listChildren(node), null, (String) null);
   }
 
   private GfsTreeIterator(GfsFileStore store) throws IOException {
@@ -56,66 +61,99 @@ public class GfsTreeIterator extends WorkingTreeIterator {
 
   @Override
   public boolean isModified(@Nullable DirCacheEntry entry, boolean forceContentCheck, ObjectReader reader) throws IOException {
-    GfsTreeEntry current = currentEntry();
-    return entry == null || !current.getId().equals(entry.getObjectId()) || !current.getMode().equals(entry.getFileMode());
+    return entry == null || !getEntryObjectId().equals(entry.getObjectId()) || !getEntryFileMode().equals(entry.getFileMode());
   }
 
   @Override
   public boolean hasId() {
-    return index >= 0 && index < files.size();
+    return !eof() && (tree != null || index >= 0);
   }
 
   @Override
   public byte[] idBuffer() {
-    byte[] ret = new byte[OBJECT_ID_LENGTH];
-    id.copyRawTo(ret, 0);
-    return ret;
+    return tree != null ? tree.idBuffer() : idBuffer;
   }
 
   @Override
   public int idOffset() {
-    return 0;
+    return tree != null ? tree.idOffset() : 0;
   }
 
   @Nonnull
   @Override
   public AbstractTreeIterator createSubtreeIterator(ObjectReader reader) throws IOException {
-    GfsTreeEntry entry = currentEntry();
-    return new GfsTreeIterator(entry.listChildren(), this);
+    ObjectId stored = storedSubtreeId();
+    if(stored != null)
+      return new GfsTreeIterator(null, new CanonicalTreeParser(null, reader, stored), this);
+    return new GfsTreeIterator(currentEntry().listChildren(), null, this);
+  }
+
+  @Nonnull
+  public GfsTreeIterator createDetachedSubtreeIterator(ObjectReader reader) throws IOException {
+    ObjectId stored = storedSubtreeId();
+    if(stored != null)
+      return new GfsTreeIterator(null, new CanonicalTreeParser(null, reader, stored), getEntryPathString());
+    return new GfsTreeIterator(currentEntry().listChildren(), null, getEntryPathString());
   }
 
   @Override
   public boolean first() {
-    return index == 0;
+    return tree != null ? tree.first() : index == 0;
   }
 
   @Override
   public boolean eof() {
-    return index == files.size();
+    return tree != null ? tree.eof() : index == files.size();
   }
 
   @Override
   public void next(int delta) {
-    index = Math.min(files.size(), index + delta);
+    if(tree != null)
+      tree.next(delta);
+    else
+      index = Math.min(files.size(), index + delta);
     if(!eof()) readEntry();
   }
 
   @Override
   public void back(int delta) {
-    index = Math.max(0, index - delta);
+    if(tree != null)
+      tree.back(delta);
+    else
+      index = Math.max(0, index - delta);
     readEntry();
   }
 
+  private void start() {
+    if(tree == null)
+      next(1);
+    else if(!tree.eof())
+      readEntry();
+  }
+
+  @Nullable
+  private ObjectId storedSubtreeId() {
+    return tree != null ? tree.getEntryObjectId() : currentEntry().getStoredId();
+  }
+
   @Nonnull
   private GfsTreeEntry currentEntry() {
     return files.get(index);
   }
 
   private void readEntry() {
+    if(tree != null) {
+      mode = tree.getEntryRawMode();
+      int length = tree.getNameLength();
+      ensurePathCapacity(pathOffset + length, pathOffset);
+      tree.getName(path, pathOffset);
+      pathLen = pathOffset + length;
+      return;
+    }
     GfsTreeEntry entry = currentEntry();
 
     mode = entry.getMode().getBits();
-    id = entry.getId();
+    entry.getId().copyRawTo(idBuffer, 0);
 
     byte[] name = encode(entry.getName());
     ensurePathCapacity(pathOffset + name.length, pathOffset);
@@ -126,15 +164,24 @@ public class GfsTreeIterator extends WorkingTreeIterator {
   private static class GfsTreeEntry {
     private final String name;
     private final Node node;
+    private final GitFileEntry entry;
+    private final DirectoryNode parent;
 
-    private GfsTreeEntry(String name, Node node) {
+    private GfsTreeEntry(String name, @Nullable Node node, @Nullable GitFileEntry entry, DirectoryNode parent) {
       this.name = name;
       this.node = node;
+      this.entry = entry;
+      this.parent = parent;
+    }
+
+    @Nonnull
+    public static GfsTreeEntry forNode(String name, Node node, DirectoryNode parent) {
+      return new GfsTreeEntry(name, node, null, parent);
     }
 
     @Nonnull
-    public static GfsTreeEntry forNode(String name, Node node) {
-      return new GfsTreeEntry(name, node);
+    public static GfsTreeEntry forEntry(String name, GitFileEntry entry, DirectoryNode parent) {
+      return new GfsTreeEntry(name, null, entry, parent);
     }
 
     @Nonnull
@@ -144,6 +191,8 @@ public class GfsTreeIterator extends WorkingTreeIterator {
 
     @Nonnull
     public ObjectId getId() {
+      if(entry != null)
+        return entry.getId();
       try {
         return node.getObjectId(false);
       } catch(IOException e) {
@@ -151,39 +200,37 @@ public class GfsTreeIterator extends WorkingTreeIterator {
       }
     }
 
+    @Nullable
+    public ObjectId getStoredId() {
+      return entry != null ? entry.getId() : node.getStoredId();
+    }
+
     @Nonnull
     public FileMode getMode() {
-      return node.getMode();
+      return entry != null ? entry.getMode() : node.getMode();
     }
 
     @Nonnull
     public List<GfsTreeEntry> listChildren() throws IOException {
-      if(!node.isDirectory())
+      Node dir = node != null ? node : parent.getChild(name);
+      if(dir == null || !dir.isDirectory())
         throw new IllegalStateException();
-      return listChildren((DirectoryNode) node);
+      return listChildren((DirectoryNode) dir);
     }
 
     @Nonnull
     public static List<GfsTreeEntry> listChildren(DirectoryNode dir) throws IOException {
-      List<GfsTreeEntry> ret = new ArrayList<>();
-      for(Map.Entry<String, Node> child : dir.getData().entrySet()) {
-        Node node = child.getValue();
-        if(!node.isTrivial()) ret.add(forNode(child.getKey(), node));
+      DirectoryChildren children = dir.getData();
+      List<GfsTreeEntry> ret = new ArrayList<>(children.size());
+      for(int i = 0; i < children.size(); i++) {
+        Node node = children.getNode(i);
+        if(node == null)
+          ret.add(forEntry(children.getName(i), children.getSourceEntry(i), dir));
+        else if(!node.isTrivial())
+          ret.add(forNode(children.getName(i), node, dir));
       }
-      sort(ret, TreeEntryComparator.ASCENDING);
       return unmodifiableList(ret);
     }
   }
 
-  private static class TreeEntryComparator implements Comparator<GfsTreeEntry> {
-
-    private static TreeEntryComparator ASCENDING = new TreeEntryComparator();
-
-    @Override
-    public int compare(GfsTreeEntry o1, GfsTreeEntry o2) {
-      return o1.getName().compareTo(o2.getName());
-    }
-
-  }
-
 }
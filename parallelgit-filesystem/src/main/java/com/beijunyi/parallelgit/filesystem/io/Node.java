@@ -1,6 +1,8 @@
 package com.beijunyi.parallelgit.filesystem.io;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -16,16 +18,29 @@ import static com.beijunyi.parallelgit.utils.io.GitFileEntry.missingEntry;
 import static org.eclipse.jgit.lib.FileMode.*;
 import static org.eclipse.jgit.lib.ObjectId.zeroId;
 
+/*
+ * Nodes are safe for concurrent use. Structural changes to a directory are serialized on the directory node itself,
+ * so writers in independent subtrees never contend. Every change bumps the version of the changed node and all of its
+ * ancestors before clearing their cached ids; a computed id is only kept if the node's version did not move while it
+ * was being computed. A flush therefore reflects every change completed before it started, and a change racing with
+ * a flush is never lost: it is either part of the flushed tree or leaves the affected directories dirty.
+ */
 public abstract class Node<Snapshot extends ObjectSnapshot, Data> {
 
+  private static final AtomicLongFieldUpdater<Node> VERSION = AtomicLongFieldUpdater.newUpdater(Node.class, "version");
+  private static final AtomicReferenceFieldUpdater<Node, ObjectId> ID = AtomicReferenceFieldUpdater.newUpdater(Node.class, ObjectId.class, "id");
+
   protected final GfsObjectService objService;
 
   protected volatile GitFileEntry origin = missingEntry();
   protected volatile DirectoryNode parent;
+  protected volatile String name;
   protected volatile Snapshot snapshot;
   protected volatile ObjectId id;
   protected volatile FileMode mode;
   protected volatile Data data;
+  private volatile long version;
+  volatile long budgetedBytes;
 
   protected Node(FileMode mode, GfsObjectService objService) {
     this.objService = objService;
@@ -84,11 +99,20 @@ public abstract class Node<Snapshot extends ObjectSnapshot, Data> {
 
   @Nonnull
   public ObjectId getObjectId(boolean persist) throws IOException {
-    if(id == null || persist && !objService.hasObject(id)) {
+    ObjectId ret = id;
+    if(ret == null || persist && !objService.hasObject(ret)) {
+      long stamp = version;
       Snapshot snapshot = takeSnapshot(persist);
-      id = snapshot != null ? snapshot.getId() : zeroId();
+      ret = snapshot != null ? snapshot.getId() : zeroId();
+      publishId(ret, stamp);
     }
-    return id;
+    return ret;
+  }
+
+  @Nullable
+  ObjectId getStoredId() {
+    ObjectId ret = id;
+    return ret != null && (data == null || ret.equals(origin.getId())) ? ret : null;
   }
 
   @Nonnull
@@ -108,7 +132,8 @@ public abstract class Node<Snapshot extends ObjectSnapshot, Data> {
   public void setMode(FileMode mode) {
     checkFileMode(mode);
     this.mode = mode;
-    invalidateParentCache();
+    RootNode root = invalidateParentCache();
+    if(root != null) root.recordChange(this);
   }
 
   public boolean isNew() throws IOException {
@@ -122,11 +147,30 @@ public abstract class Node<Snapshot extends ObjectSnapshot, Data> {
 
   @Nonnull
   protected Data getData() throws IOException {
-    if(data != null)
-      return data;
-    if(id == null) throw new IllegalStateException();
-    data = loadData(loadSnapshot(id));
-    return data;
+    while(true) {
+      Data ret = data;
+      if(ret != null) {
+        objService.getDataBudget().touch(this);
+        return ret;
+      }
+      ObjectId id = this.id;
+      if(id == null) {
+        if(data != null) continue;
+        throw new IllegalStateException();
+      }
+      ret = loadData(loadSnapshot(id));
+      if(publishData(ret, id)) {
+        objService.getDataBudget().loaded(this, weigh(ret));
+        return ret;
+      }
+    }
+  }
+
+  private synchronized boolean publishData(Data loaded, ObjectId source) {
+    if(data != null || !source.equals(id))
+      return false;
+    data = loaded;
+    return true;
   }
 
   protected boolean isTrivial() throws IOException {
@@ -143,7 +187,7 @@ public abstract class Node<Snapshot extends ObjectSnapshot, Data> {
 
   @Nullable
   protected Snapshot takeSnapshot(boolean persist) throws IOException {
-    if(data == null) throw new IllegalStateException();
+    Data data = getData();
     if(isTrivial(data)) return null;
     Snapshot snapshot = captureData(data, persist);
     if(persist) objService.write(snapshot);
@@ -163,23 +207,68 @@ public abstract class Node<Snapshot extends ObjectSnapshot, Data> {
     reset(origin);
   }
 
-  protected void reset(GitFileEntry entry) {
+  protected synchronized void reset(GitFileEntry entry) {
     checkFileMode(mode);
     this.id = entry.getId();
     this.mode = entry.getMode();
     this.data = null;
-    invalidateParentCache();
+    objService.getDataBudget().release(this);
+    VERSION.incrementAndGet(this);
+    RootNode root = invalidateParentCache();
+    if(root != null) root.recordChange(this);
+  }
+
+  @Nullable
+  protected RootNode invalidate() {
+    objService.getDataBudget().release(this);
+    VERSION.incrementAndGet(this);
+    id = null;
+    return invalidateParentCache();
+  }
+
+  @Nullable
+  protected RootNode invalidateParentCache() {
+    Node top = this;
+    for(DirectoryNode node = parent; node != null; node = node.parent) {
+      VERSION.incrementAndGet(node);
+      node.id = null;
+      top = node;
+    }
+    return top instanceof RootNode ? (RootNode) top : null;
   }
 
-  protected void invalidateParentCache() {
-    if(parent != null) {
-      parent.id = null;
-      parent.invalidateParentCache();
+  private void publishId(ObjectId value, long stamp) {
+    if(ID.compareAndSet(this, null, value) && version != stamp && ID.compareAndSet(this, value, null))
+      invalidateParentCache();
+  }
+
+  protected synchronized boolean evict() {
+    Data data = this.data;
+    if(data != null) {
+      if(id == null || !id.equals(origin.getId()) || !isEvictable(data))
+        return false;
+      this.data = null;
+      snapshot = null;
     }
+    objService.getDataBudget().release(this);
+    return true;
+  }
+
+  protected boolean isEvictable(Data data) {
+    return true;
+  }
+
+  boolean isAttachedTo(RootNode root) {
+    Node current = this;
+    DirectoryNode parent;
+    while((parent = current.parent) != null)
+      current = parent;
+    return current == root;
   }
 
   protected void exile() {
     parent = null;
+    objService.getDataBudget().release(this);
   }
 
   protected abstract Class<? extends Snapshot> getSnapshotType();
@@ -194,6 +283,8 @@ public abstract class Node<Snapshot extends ObjectSnapshot, Data> {
   @Nonnull
   protected abstract Data loadData(Snapshot snapshot) throws IOException;
 
+  protected abstract long weigh(Data data);
+
   protected abstract boolean isTrivial(Data data) throws IOException;
 
   @Nonnull
@@ -202,6 +293,9 @@ public abstract class Node<Snapshot extends ObjectSnapshot, Data> {
   @Nonnull
   protected abstract Node clone(DirectoryNode parent) throws IOException;
 
+  @Nonnull
+  protected abstract Node fork(DirectoryNode parent) throws IOException;
+
   protected static boolean isTrivial(ObjectId id) {
     return zeroId().equals(id);
   }
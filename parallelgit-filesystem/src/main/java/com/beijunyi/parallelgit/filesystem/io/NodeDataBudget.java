@@ -0,0 +1,82 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.UNLIMITED_LOADED_BYTES;
+
+/*
+ * Eviction runs outside of the budget's lock and callers must not hold any node's monitor when reporting a load, so
+ * the only lock order involved is node -> budget (a node releases itself while holding its own monitor).
+ */
+public class NodeDataBudget {
+
+  private static final AtomicLongFieldUpdater<Node> BUDGETED = AtomicLongFieldUpdater.newUpdater(Node.class, "budgetedBytes");
+
+  private final long limit;
+  private final LinkedHashMap<Node, Boolean> nodes;
+  private final AtomicLong loadedBytes = new AtomicLong();
+
+  public NodeDataBudget(long limit) {
+    this.limit = limit;
+    nodes = limit != UNLIMITED_LOADED_BYTES ? new LinkedHashMap<Node, Boolean>(16, 0.75f, true) : null;
+  }
+
+  public long getLimit() {
+    return limit;
+  }
+
+  public long getLoadedBytes() {
+    return loadedBytes.get();
+  }
+
+  void loaded(Node node, long size) {
+    if(nodes == null) {
+      charge(node, size);
+      return;
+    }
+    List<Node> victims = new ArrayList<>();
+    synchronized(this) {
+      charge(node, size);
+      nodes.put(node, Boolean.TRUE);
+      long excess = loadedBytes.get() - limit;
+      Iterator<Node> it = nodes.keySet().iterator();
+      while(excess > 0 && it.hasNext()) {
+        Node eldest = it.next();
+        if(eldest == node)
+          continue;
+        victims.add(eldest);
+        excess -= eldest.budgetedBytes;
+      }
+    }
+    for(Node victim : victims) {
+      if(!victim.evict())
+        touch(victim);
+    }
+  }
+
+  void touch(Node node) {
+    if(nodes != null) {
+      synchronized(this) {
+        nodes.get(node);
+      }
+    }
+  }
+
+  void release(Node node) {
+    if(nodes == null) {
+      charge(node, 0);
+      return;
+    }
+    synchronized(this) {
+      charge(node, 0);
+      nodes.remove(node);
+    }
+  }
+
+  private void charge(Node node, long size) {
+    loadedBytes.addAndGet(size - BUDGETED.getAndSet(node, size));
+  }
+
+}
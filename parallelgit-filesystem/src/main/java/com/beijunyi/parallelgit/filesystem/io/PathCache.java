@@ -0,0 +1,55 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+final class PathCache {
+
+  private static final int SLOTS = 256;
+
+  private final Entry[] entries = new Entry[SLOTS];
+
+  @Nullable
+  DirectoryNode get(byte[] path, int end, long version) {
+    Entry entry = entries[slotOf(path, end)];
+    if(entry != null && entry.version == version && entry.matches(path, end))
+      return entry.node;
+    return null;
+  }
+
+  void put(byte[] path, int end, DirectoryNode node, long version) {
+    entries[slotOf(path, end)] = new Entry(Arrays.copyOf(path, end), node, version);
+  }
+
+  private static int slotOf(byte[] path, int end) {
+    int hash = 0;
+    for(int i = 0; i < end; i++)
+      hash = 31 * hash + path[i];
+    hash ^= hash >>> 16;
+    return hash & (SLOTS - 1);
+  }
+
+  private static class Entry {
+
+    private final byte[] path;
+    private final DirectoryNode node;
+    private final long version;
+
+    private Entry(byte[] path, DirectoryNode node, long version) {
+      this.path = path;
+      this.node = node;
+      this.version = version;
+    }
+
+    private boolean matches(byte[] other, int end) {
+      if(path.length != end)
+        return false;
+      for(int i = end - 1; i >= 0; i--)
+        if(path[i] != other[i])
+          return false;
+      return true;
+    }
+
+  }
+
+}
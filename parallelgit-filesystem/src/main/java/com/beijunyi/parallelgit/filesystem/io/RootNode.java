@@ -1,16 +1,28 @@
 package com.beijunyi.parallelgit.filesystem.io;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.beijunyi.parallelgit.filesystem.GfsObjectService;
+import com.beijunyi.parallelgit.utils.io.GitFileEntry;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
 
+import static com.beijunyi.parallelgit.utils.io.GitFileEntry.*;
+import static org.eclipse.jgit.lib.Constants.encode;
+import static java.util.Collections.unmodifiableSortedMap;
 
 public class RootNode extends DirectoryNode {
 
+  private final PathCache parents = new PathCache();
+  private final AtomicLong structureVersion = new AtomicLong();
+  private final ConcurrentMap<String, GitFileEntry> changes = new ConcurrentHashMap<>();
+
   public RootNode(ObjectId id, GfsObjectService objService) throws IOException {
     super(id, objService);
     updateOrigin(id);
@@ -18,6 +30,7 @@ public class RootNode extends DirectoryNode {
 
   public RootNode(GfsObjectService objService) {
     super(objService);
+    recordChange(this);
   }
 
   @Nonnull
@@ -30,8 +43,153 @@ public class RootNode extends DirectoryNode {
     return new RootNode(objService);
   }
 
+  @Nonnull
+  public RootNode fork(GfsObjectService objService) throws IOException {
+    RootNode ret = newRoot(objService);
+    forkInto(ret);
+    ret.changes.clear();
+    ret.changes.putAll(changes);
+    return ret;
+  }
+
+  @Nullable
+  public Node findNode(byte[] path) throws IOException {
+    int end = path.length;
+    int parentEnd = end - 1;
+    while(parentEnd >= 0 && path[parentEnd] != '/')
+      parentEnd--;
+    if(parentEnd < 0 || parentEnd == end - 1)
+      return this;
+    long version = structureVersion.get();
+    DirectoryNode parent = parentEnd == 0 ? this : parents.get(path, parentEnd, version);
+    if(parent == null) {
+      Node node = walk(path, parentEnd);
+      if(!(node instanceof DirectoryNode))
+        return null;
+      parent = (DirectoryNode) node;
+      parents.put(path, parentEnd, parent, version);
+    }
+    return parent.getChild(path, parentEnd + 1, end);
+  }
+
+  @Override
+  public void updateOrigin(GitFileEntry entry) throws IOException {
+    List<String> paths = new ArrayList<>(changes.keySet());
+    super.updateOrigin(entry);
+    changes.clear();
+    for(String path : paths) {
+      GitFileEntry origin = originOf(path);
+      if(!origin.equals(currentEntryOf(path)))
+        changes.put(path, origin);
+    }
+  }
+
+  public boolean isDirty() throws IOException {
+    for(Map.Entry<String, GitFileEntry> change : changes.entrySet()) {
+      if(!change.getValue().equals(currentEntryOf(change.getKey())))
+        return true;
+    }
+    return false;
+  }
+
+  @Nonnull
+  public SortedMap<String, GitFileEntry> getChanges() throws IOException {
+    SortedMap<String, GitFileEntry> ret = new TreeMap<>();
+    for(Map.Entry<String, GitFileEntry> change : changes.entrySet()) {
+      if(!change.getValue().equals(currentEntryOf(change.getKey())))
+        ret.put(change.getKey(), change.getValue());
+    }
+    return unmodifiableSortedMap(ret);
+  }
+
+  void recordChange(Node node) {
+    String path = pathOf(node);
+    if(path != null)
+      changes.putIfAbsent(path, node.getOrigin());
+  }
+
+  void recordChange(DirectoryNode parent, String name, GitFileEntry origin) {
+    String path = pathOf(parent);
+    if(path != null)
+      changes.putIfAbsent(path.equals("/") ? path + name : path + "/" + name, origin);
+  }
+
+  void updateStructureVersion() {
+    structureVersion.incrementAndGet();
+  }
+
   @Override
-  protected boolean isTrivial(Map<String, Node> data) {
+  protected boolean isTrivial(DirectoryChildren data) {
     return false;
   }
+
+  @Nonnull
+  private GitFileEntry currentEntryOf(String path) throws IOException {
+    Node node = findNode(encode(path));
+    if(node == null)
+      return missingEntry();
+    ObjectId id = node.getObjectId(false);
+    return isTrivial(id) ? missingEntry() : newEntry(id, node.getMode());
+  }
+
+  @Nonnull
+  private GitFileEntry originOf(String path) throws IOException {
+    GitFileEntry ret = origin;
+    Node current = this;
+    for(String name : path.substring(1).split("/")) {
+      if(name.isEmpty())
+        continue;
+      if(current instanceof DirectoryNode) {
+        DirectoryNode parent = (DirectoryNode) current;
+        current = parent.getChild(name);
+        ret = current != null ? current.getOrigin() : parent.findOrigin(name);
+      } else {
+        current = null;
+        ret = ret.isSubtree() ? objService.readTree(ret.getId()).getChild(name) : missingEntry();
+      }
+    }
+    return ret;
+  }
+
+  @Nullable
+  private String pathOf(Node node) {
+    if(node == this)
+      return "/";
+    StringBuilder ret = new StringBuilder();
+    Node current = node;
+    DirectoryNode parent;
+    while((parent = current.parent) != null) {
+      String name = current.name;
+      if(name == null)
+        return null;
+      ret.insert(0, name).insert(0, '/');
+      if(parent == this)
+        return ret.toString();
+      current = parent;
+    }
+    return null;
+  }
+
+  @Nullable
+  private Node walk(byte[] path, int end) throws IOException {
+    Node current = this;
+    int start = 0;
+    while(start < end) {
+      if(path[start] == '/') {
+        start++;
+        continue;
+      }
+      int next = start;
+      while(next < end && path[next] != '/')
+        next++;
+      if(!(current instanceof DirectoryNode))
+        return null;
+      current = ((DirectoryNode) current).getChild(path, start, next);
+      if(current == null)
+        return null;
+      start = next;
+    }
+    return current;
+  }
+
 }
@@ -0,0 +1,51 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.util.*;
+import javax.annotation.Nonnull;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+public class SpilledFiles {
+
+  private final long limit;
+  private Map<FileNode, ObjectId> files = new LinkedHashMap<>();
+  private long pendingBytes;
+
+  public SpilledFiles(long limit) {
+    this.limit = limit;
+  }
+
+  public synchronized long getPendingBytes() {
+    return pendingBytes;
+  }
+
+  synchronized boolean add(FileNode file, ObjectId blob, long size) {
+    files.put(file, blob);
+    pendingBytes += size;
+    return pendingBytes >= limit;
+  }
+
+  @Nonnull
+  public synchronized Batch drain() {
+    Batch ret = new Batch(files);
+    files = new LinkedHashMap<>();
+    pendingBytes = 0;
+    return ret;
+  }
+
+  public static class Batch {
+
+    private final Map<FileNode, ObjectId> files;
+
+    private Batch(Map<FileNode, ObjectId> files) {
+      this.files = files;
+    }
+
+    public void release() {
+      for(Map.Entry<FileNode, ObjectId> file : files.entrySet())
+        file.getKey().dropSpilledData(file.getValue());
+    }
+
+  }
+
+}
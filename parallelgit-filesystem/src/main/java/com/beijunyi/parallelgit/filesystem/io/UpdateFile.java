@@ -1,5 +1,6 @@
 package com.beijunyi.parallelgit.filesystem.io;
 
+import java.io.IOException;
 import javax.annotation.Nullable;
 
 import org.eclipse.jgit.lib.FileMode;
@@ -18,7 +19,7 @@ public class UpdateFile extends GfsChange {
 
   @Nullable
   @Override
-  protected Node convertNode(@Nullable Node node, DirectoryNode parent) {
+  protected Node convertNode(@Nullable Node node, DirectoryNode parent) throws IOException {
     return fromBytes(bytes, mode, parent);
   }
 
@@ -0,0 +1,315 @@
+package com.beijunyi.parallelgit.filesystem.merge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.beijunyi.parallelgit.filesystem.GfsObjectService;
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import com.beijunyi.parallelgit.filesystem.io.DirectoryNode;
+import com.beijunyi.parallelgit.filesystem.io.GfsChangesCollector;
+import com.beijunyi.parallelgit.filesystem.io.Node;
+import com.beijunyi.parallelgit.utils.io.GitFileEntry;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.merge.MergeAlgorithm;
+import org.eclipse.jgit.merge.MergeFormatter;
+import org.eclipse.jgit.merge.MergeResult;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.NameConflictTreeWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsForkJoinUtils.invokeAll;
+import static com.beijunyi.parallelgit.utils.io.GitFileEntry.*;
+import static java.util.Collections.*;
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.eclipse.jgit.lib.FileMode.*;
+
+public class GfsTreeMerger {
+
+  private static final int BASE = 0;
+  private static final int OURS = 1;
+  private static final int THEIRS = 2;
+
+  private final GitFileSystem gfs;
+  private final GfsObjectService objService;
+  private final String[] names;
+  private final MergeFormatter formatter;
+  private final GfsChangesCollector changes = new GfsChangesCollector();
+  private final List<FileMerge> fileMerges = new ArrayList<>();
+  private final Map<String, MergeConflict> conflicts = new TreeMap<>();
+  private final Set<String> unmergedPaths = new TreeSet<>();
+  private final List<String> failingPaths = new ArrayList<>();
+
+  private ExecutorService executor;
+  private ObjectReader reader;
+  private ObjectId resultTree;
+
+  public GfsTreeMerger(GitFileSystem gfs, String[] names, MergeFormatter formatter) {
+    this.gfs = gfs;
+    this.objService = gfs.getObjectService();
+    this.names = names;
+    this.formatter = formatter;
+    executor = objService.getFlushPool();
+  }
+
+  @Nonnull
+  public GfsTreeMerger withExecutor(@Nullable ExecutorService executor) {
+    this.executor = executor;
+    return this;
+  }
+
+  public boolean merge(@Nullable AnyObjectId base, AnyObjectId ours, AnyObjectId theirs) throws IOException {
+    try(ObjectReader reader = gfs.getRepository().newObjectReader()) {
+      this.reader = reader;
+      PendingTree root = mergeTrees("", base, ours, theirs, gfs.getFileStore().getRoot());
+      mergeFiles();
+      if(!failingPaths.isEmpty())
+        return false;
+      ObjectId tree = root.insert();
+      resultTree = tree != null ? tree : objService.insert(OBJ_TREE, new TreeFormatter().toByteArray());
+      objService.flush();
+    } finally {
+      reader = null;
+    }
+    if(!changes.isEmpty())
+      changes.applyTo(gfs);
+    return true;
+  }
+
+  public boolean hasConflicts() {
+    return !unmergedPaths.isEmpty();
+  }
+
+  @Nonnull
+  public Map<String, MergeConflict> getConflicts() {
+    return unmodifiableMap(conflicts);
+  }
+
+  @Nonnull
+  public List<String> getUnmergedPaths() {
+    List<String> ret = new ArrayList<>(unmergedPaths.size());
+    for(String path : unmergedPaths)
+      ret.add(path.substring(1));
+    return ret;
+  }
+
+  @Nonnull
+  public List<String> getFailingPaths() {
+    return unmodifiableList(failingPaths);
+  }
+
+  @Nonnull
+  public ObjectId getResultTreeId() {
+    if(resultTree == null || hasConflicts())
+      throw new IllegalStateException();
+    return resultTree;
+  }
+
+  @Nonnull
+  private PendingTree mergeTrees(String path, @Nullable AnyObjectId base, AnyObjectId ours, AnyObjectId theirs, @Nullable DirectoryNode worktree) throws IOException {
+    PendingTree ret = new PendingTree();
+    try(TreeWalk tw = new NameConflictTreeWalk(reader)) {
+      tw.addTree(iterate(base));
+      tw.addTree(iterate(ours));
+      tw.addTree(iterate(theirs));
+      while(tw.next())
+        mergeEntries(path + "/" + tw.getNameString(), tw.getNameString(), newEntry(tw, BASE), newEntry(tw, OURS), newEntry(tw, THEIRS), worktree, ret);
+    }
+    return ret;
+  }
+
+  private void mergeEntries(String path, String name, GitFileEntry base, GitFileEntry ours, GitFileEntry theirs, @Nullable DirectoryNode worktree, PendingTree parent) throws IOException {
+    if(ours.equals(theirs) || base.equals(theirs)) {
+      parent.add(name, ours);
+    } else if(base.equals(ours) && !(ours.isSubtree() && theirs.isSubtree() && !currentEntry(name, worktree).equals(ours))) {
+      if(checkWorktree(path, name, ours, worktree))
+        changes.addChange(path, theirs);
+      parent.add(name, theirs);
+    } else if(!isNonTree(ours) && !isNonTree(theirs)) {
+      parent.add(name, mergeTrees(path, treeId(base), treeId(ours), treeId(theirs), subDirectory(name, worktree)));
+    } else if(ours.isSubtree() || theirs.isSubtree() || isGitLink(ours) || isGitLink(theirs)) {
+      unmergedPaths.add(path);
+      parent.add(name, ours);
+    } else {
+      FileMode mode = null;
+      if(!ours.isMissing() && !theirs.isMissing()) {
+        mode = mergeModes(base.getMode(), ours.getMode(), theirs.getMode());
+        if(mode == null)
+          mode = REGULAR_FILE;
+      }
+      FileMerge merge = new FileMerge(path, name, base, ours, theirs, mode, worktree);
+      fileMerges.add(merge);
+      parent.add(name, merge);
+    }
+  }
+
+  private void mergeFiles() throws IOException {
+    invokeAll(executor, fileMerges);
+    for(FileMerge merge : fileMerges)
+      merge.complete();
+  }
+
+  private boolean checkWorktree(String path, String name, GitFileEntry ours, @Nullable DirectoryNode worktree) throws IOException {
+    if(currentEntry(name, worktree).equals(ours))
+      return true;
+    failingPaths.add(path);
+    return false;
+  }
+
+  @Nonnull
+  private static GitFileEntry currentEntry(String name, @Nullable DirectoryNode worktree) throws IOException {
+    Node node = worktree != null ? worktree.getChild(name) : null;
+    if(node != null) {
+      ObjectId id = node.getObjectId(false);
+      if(!ObjectId.zeroId().equals(id))
+        return newEntry(id, node.getMode());
+    }
+    return missingEntry();
+  }
+
+  @Nonnull
+  private MergeConflict addConflict(String path, MergeResult<? extends Sequence> result) {
+    MergeConflict ret = new MergeConflict(result, names);
+    conflicts.put(path, ret);
+    unmergedPaths.add(path);
+    return ret;
+  }
+
+  @Nonnull
+  private AbstractTreeIterator iterate(@Nullable AnyObjectId tree) throws IOException {
+    return tree != null ? new CanonicalTreeParser(null, reader, tree) : new EmptyTreeIterator();
+  }
+
+  @Nonnull
+  private RawText readText(GitFileEntry entry) throws IOException {
+    return isNonTree(entry) ? new RawText(objService.readBlob(entry.getId()).getData()) : RawText.EMPTY_TEXT;
+  }
+
+  @Nonnull
+  private byte[] format(MergeResult<RawText> result) throws IOException {
+    try(ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      formatter.formatMerge(stream, result, names[0], names[1], names[2], CHARSET.name());
+      return stream.toByteArray();
+    }
+  }
+
+  @Nullable
+  private static DirectoryNode subDirectory(String name, @Nullable DirectoryNode worktree) throws IOException {
+    Node node = worktree != null ? worktree.getChild(name) : null;
+    return node instanceof DirectoryNode ? (DirectoryNode) node : null;
+  }
+
+  @Nullable
+  private static FileMode mergeModes(FileMode base, FileMode ours, FileMode theirs) {
+    if(ours.equals(theirs) || base.equals(theirs))
+      return ours;
+    if(base.equals(ours))
+      return theirs;
+    return null;
+  }
+
+  @Nullable
+  private static ObjectId treeId(GitFileEntry entry) {
+    return entry.isSubtree() ? entry.getId() : null;
+  }
+
+  private static boolean isNonTree(GitFileEntry entry) {
+    return !entry.isMissing() && !entry.isSubtree();
+  }
+
+  private static boolean isGitLink(GitFileEntry entry) {
+    return GITLINK.equals(entry.getMode());
+  }
+
+  private class FileMerge implements Callable<Void> {
+
+    private final String path;
+    private final String name;
+    private final GitFileEntry base;
+    private final GitFileEntry ours;
+    private final GitFileEntry theirs;
+    private final FileMode mode;
+    private final DirectoryNode worktree;
+
+    private MergeResult<RawText> result;
+    private GitFileEntry entry;
+
+    private FileMerge(String path, String name, GitFileEntry base, GitFileEntry ours, GitFileEntry theirs, @Nullable FileMode mode, @Nullable DirectoryNode worktree) {
+      this.path = path;
+      this.name = name;
+      this.base = base;
+      this.ours = ours;
+      this.theirs = theirs;
+      this.mode = mode;
+      this.worktree = worktree;
+    }
+
+    @Override
+    public Void call() throws IOException {
+      result = new MergeAlgorithm().merge(RawTextComparator.DEFAULT, readText(base), readText(ours), readText(theirs));
+      return null;
+    }
+
+    private void complete() throws IOException {
+      entry = ours;
+      if(!checkWorktree(path, name, ours, worktree))
+        return;
+      if(mode == null || result.containsConflicts()) {
+        MergeConflict conflict = addConflict(path, result);
+        changes.addChange(path, conflict.format(formatter), REGULAR_FILE);
+        return;
+      }
+      entry = newEntry(objService.insert(OBJ_BLOB, format(result)), mode);
+      changes.addChange(path, entry);
+    }
+
+  }
+
+  private class PendingTree {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Object> entries = new ArrayList<>();
+
+    private void add(String name, Object entry) {
+      names.add(name);
+      entries.add(entry);
+    }
+
+    @Nullable
+    private ObjectId insert() throws IOException {
+      TreeFormatter ret = new TreeFormatter();
+      boolean empty = true;
+      for(int i = 0; i < names.size(); i++) {
+        GitFileEntry entry = resolve(entries.get(i));
+        if(!entry.isMissing()) {
+          ret.append(names.get(i), entry.getMode(), entry.getId());
+          empty = false;
+        }
+      }
+      return empty ? null : objService.insert(OBJ_TREE, ret.toByteArray());
+    }
+
+    @Nonnull
+    private GitFileEntry resolve(Object entry) throws IOException {
+      if(entry instanceof FileMerge)
+        return ((FileMerge) entry).entry;
+      if(entry instanceof PendingTree) {
+        ObjectId tree = ((PendingTree) entry).insert();
+        return tree != null ? newTreeEntry(tree) : missingEntry();
+      }
+      return (GitFileEntry) entry;
+    }
+
+  }
+
+}
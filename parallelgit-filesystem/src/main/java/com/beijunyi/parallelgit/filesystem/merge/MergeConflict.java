@@ -20,7 +20,7 @@ public class MergeConflict {
   private final MergeResult<? extends Sequence> result;
   private final String[] names;
 
-  private MergeConflict(MergeResult<? extends Sequence> result, String[] names) {
+  MergeConflict(MergeResult<? extends Sequence> result, String[] names) {
     this.result = result;
     this.names = names;
   }
@@ -8,6 +8,7 @@ import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import com.beijunyi.parallelgit.filesystem.GfsObjectCache;
 import com.beijunyi.parallelgit.filesystem.exceptions.HeadAlreadyDefinedException;
 import com.beijunyi.parallelgit.utils.RefUtils;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
@@ -24,9 +25,23 @@ import static com.beijunyi.parallelgit.utils.RepositoryUtils.*;
 
 public class GfsConfiguration {
 
+  public static final int DEFAULT_READER_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+  public static final long DEFAULT_LARGE_FILE_THRESHOLD = 16L * 1024 * 1024;
+  public static final long UNLIMITED_DIRTY_BYTES = Long.MAX_VALUE;
+  public static final long UNLIMITED_LOADED_BYTES = Long.MAX_VALUE;
+  public static final int DEFAULT_FLUSH_PARALLELISM = 1;
+
   private final Repository repo;
   private String branch;
   private RevCommit commit;
+  private int readerPoolSize = DEFAULT_READER_POOL_SIZE;
+  private GfsObjectCache objectCache;
+  private long largeFileThreshold = DEFAULT_LARGE_FILE_THRESHOLD;
+  private long dirtyBytesLimit = UNLIMITED_DIRTY_BYTES;
+  private long loadedBytesLimit = UNLIMITED_LOADED_BYTES;
+  private int flushParallelism = DEFAULT_FLUSH_PARALLELISM;
+  private boolean packInserter = false;
+  private boolean lazyDirectories = true;
 
   public GfsConfiguration(Repository repo) {
     this.repo = repo;
@@ -122,6 +137,97 @@ public class GfsConfiguration {
     return commit;
   }
 
+  @Nonnull
+  public GfsConfiguration readerPoolSize(int size) {
+    if(size < 1)
+      throw new IllegalArgumentException("Reader pool size must be positive: " + size);
+    this.readerPoolSize = size;
+    return this;
+  }
+
+  public int readerPoolSize() {
+    return readerPoolSize;
+  }
+
+  @Nonnull
+  public GfsConfiguration objectCache(@Nullable GfsObjectCache cache) {
+    this.objectCache = cache;
+    return this;
+  }
+
+  @Nullable
+  public GfsObjectCache objectCache() {
+    return objectCache;
+  }
+
+  @Nonnull
+  public GfsConfiguration largeFileThreshold(long size) {
+    if(size < 0)
+      throw new IllegalArgumentException("Large file threshold must not be negative: " + size);
+    this.largeFileThreshold = size;
+    return this;
+  }
+
+  public long largeFileThreshold() {
+    return largeFileThreshold;
+  }
+
+  @Nonnull
+  public GfsConfiguration dirtyBytesLimit(long limit) {
+    if(limit < 0)
+      throw new IllegalArgumentException("Dirty bytes limit must not be negative: " + limit);
+    this.dirtyBytesLimit = limit;
+    return this;
+  }
+
+  public long dirtyBytesLimit() {
+    return dirtyBytesLimit;
+  }
+
+  @Nonnull
+  public GfsConfiguration loadedBytesLimit(long limit) {
+    if(limit < 0)
+      throw new IllegalArgumentException("Loaded bytes limit must not be negative: " + limit);
+    this.loadedBytesLimit = limit;
+    return this;
+  }
+
+  public long loadedBytesLimit() {
+    return loadedBytesLimit;
+  }
+
+  @Nonnull
+  public GfsConfiguration flushParallelism(int parallelism) {
+    if(parallelism < 1)
+      throw new IllegalArgumentException("Flush parallelism must be positive: " + parallelism);
+    this.flushParallelism = parallelism;
+    return this;
+  }
+
+  public int flushParallelism() {
+    return flushParallelism;
+  }
+
+  @Nonnull
+  public GfsConfiguration packInserter(boolean enabled) {
+    this.packInserter = enabled;
+    return this;
+  }
+
+  public boolean packInserter() {
+    return packInserter;
+  }
+
+  @Nonnull
+  public GfsConfiguration lazyDirectories(boolean enabled) {
+    this.lazyDirectories = enabled;
+    return this;
+  }
+
+  public boolean lazyDirectories() {
+    return lazyDirectories;
+  }
+
   @Nonnull
   private GfsConfiguration readProperties(Map<String, ?> props) throws IOException {
     String branch = (String) props.get(BRANCH);
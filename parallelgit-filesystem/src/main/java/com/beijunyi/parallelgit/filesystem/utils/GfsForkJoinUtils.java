@@ -0,0 +1,109 @@
+package com.beijunyi.parallelgit.filesystem.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+public class GfsForkJoinUtils {
+
+  @Nonnull
+  public static <T> List<T> invokeAll(@Nullable ForkJoinPool pool, Collection<? extends Callable<T>> callables) throws IOException {
+    List<T> ret = new ArrayList<>(callables.size());
+    if(pool == null || callables.size() < 2) {
+      for(Callable<T> callable : callables)
+        ret.add(callInline(callable));
+      return ret;
+    }
+    List<ForkJoinTask<T>> tasks = new ArrayList<>(callables.size());
+    for(Callable<T> callable : callables)
+      tasks.add(ForkJoinTask.adapt(callable));
+    try {
+      if(ForkJoinTask.getPool() == pool)
+        ForkJoinTask.invokeAll(tasks);
+      else
+        pool.invoke(new InvokeAllTask(tasks));
+    } catch(RuntimeException e) {
+      for(Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+        if(cause instanceof IOException)
+          throw (IOException) cause;
+      throw e;
+    }
+    for(ForkJoinTask<T> task : tasks)
+      ret.add(task.join());
+    return ret;
+  }
+
+  @Nonnull
+  public static <T> List<T> invokeAll(@Nullable ExecutorService executor, Collection<? extends Callable<T>> callables) throws IOException {
+    if(executor == null || executor instanceof ForkJoinPool)
+      return invokeAll((ForkJoinPool) executor, callables);
+    if(callables.size() < 2)
+      return invokeAll((ForkJoinPool) null, callables);
+    List<Future<T>> futures;
+    try {
+      futures = executor.invokeAll(callables);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    List<T> ret = new ArrayList<>(futures.size());
+    for(Future<T> future : futures)
+      ret.add(getResult(future));
+    return ret;
+  }
+
+  private static <T> T getResult(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch(ExecutionException e) {
+      Throwable cause = e.getCause();
+      if(cause instanceof IOException)
+        throw (IOException) cause;
+      if(cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if(cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private static <T> T callInline(Callable<T> callable) throws IOException {
+    try {
+      return callable.call();
+    } catch(IOException | RuntimeException e) {
+      throw e;
+    } catch(Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class InvokeAllTask extends RecursiveAction {
+
+    private final Collection<? extends ForkJoinTask<?>> tasks;
+
+    private InvokeAllTask(Collection<? extends ForkJoinTask<?>> tasks) {
+      this.tasks = tasks;
+    }
+
+    @Override
+    protected void compute() {
+      invokeAll(tasks);
+    }
+
+  }
+
+}
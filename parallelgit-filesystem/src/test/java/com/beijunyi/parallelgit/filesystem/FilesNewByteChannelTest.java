@@ -65,6 +65,7 @@ public class FilesNewByteChannelTest extends AbstractGitFileSystemTest {
     channel = newByteChannel(gfs.getPath("/dir/file.txt"), WRITE);
     byte[] overwrite = encodeASCII("!!!");
     writeChannel(channel, overwrite);
+    channel.close();
     byte[] expected = new byte[TEST_DATA.length];
     arraycopy(TEST_DATA, 0, expected, 0, TEST_DATA.length);
     arraycopy(overwrite, 0, expected, 0, overwrite.length);
@@ -0,0 +1,71 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import org.eclipse.jgit.util.IO;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.junit.Assert.*;
+
+public class FilesNewInputStreamTest extends AbstractGitFileSystemTest {
+
+  private static final byte[] TEST_DATA = someBytes();
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    writeToCache("/dir/file.txt", TEST_DATA);
+    commitToMaster();
+    initGitFileSystem();
+  }
+
+  @Test
+  public void readUnmodifiedFile_shouldReturnTheCommittedData() throws IOException {
+    try(InputStream in = Files.newInputStream(gfs.getPath("/dir/file.txt"))) {
+      assertArrayEquals(TEST_DATA, IO.readWholeStream(in, 0).array());
+    }
+  }
+
+  @Test
+  public void readUnmodifiedFile_theFileDataShouldNotBeLoaded() throws IOException {
+    Path file = gfs.getPath("/dir/file.txt");
+    assertTrue(Files.exists(file));
+    long loaded = objService.getLoadedBytes();
+    try(InputStream in = Files.newInputStream(file)) {
+      IO.readWholeStream(in, 0);
+    }
+    assertEquals(loaded, objService.getLoadedBytes());
+  }
+
+  @Test
+  public void readModifiedFile_shouldReturnTheModifiedData() throws IOException {
+    byte[] data = someBytes();
+    Files.write(gfs.getPath("/dir/file.txt"), data);
+    try(InputStream in = Files.newInputStream(gfs.getPath("/dir/file.txt"))) {
+      assertArrayEquals(data, IO.readWholeStream(in, 0).array());
+    }
+  }
+
+  @Test(expected = NoSuchFileException.class)
+  public void readNonExistentFile_shouldThrowNoSuchFileException() throws IOException {
+    Files.newInputStream(gfs.getPath("/non_existent_file.txt"));
+  }
+
+  @Test(expected = AccessDeniedException.class)
+  public void readDirectory_shouldThrowAccessDeniedException() throws IOException {
+    Files.newInputStream(gfs.getPath("/dir"));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void openWithWriteOption_shouldThrowUnsupportedOperationException() throws IOException {
+    Files.newInputStream(gfs.getPath("/dir/file.txt"), WRITE);
+  }
+
+}
@@ -0,0 +1,138 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Random;
+import javax.annotation.Nonnull;
+
+import com.beijunyi.parallelgit.filesystem.io.GfsBlobStreamChannel;
+import com.beijunyi.parallelgit.utils.TreeUtils;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static java.nio.file.StandardOpenOption.*;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.eclipse.jgit.lib.Constants.encode;
+import static org.junit.Assert.*;
+
+public class FilesNewOutputStreamTest extends AbstractGitFileSystemTest {
+
+  private static final int LARGE_FILE_THRESHOLD = 1024;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    writeToCache("/dir/file.txt", "committed data");
+    commitToMaster();
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).largeFileThreshold(LARGE_FILE_THRESHOLD)));
+  }
+
+  @Test
+  public void writeWithDefaultOptions_shouldReplaceTheFileData() throws IOException {
+    try(OutputStream out = Files.newOutputStream(gfs.getPath("/dir/file.txt"))) {
+      out.write(encode("new"));
+    }
+    assertEquals("new", readAsString(gfs.getPath("/dir/file.txt")));
+  }
+
+  @Test
+  public void writeWithDefaultOptions_shouldCreateTheFile() throws IOException {
+    try(OutputStream out = Files.newOutputStream(gfs.getPath("/dir/new.txt"))) {
+      out.write(encode("new"));
+    }
+    assertEquals("new", readAsString(gfs.getPath("/dir/new.txt")));
+  }
+
+  @Test
+  public void writeWithAppendOption_shouldAppendToTheFileData() throws IOException {
+    try(OutputStream out = Files.newOutputStream(gfs.getPath("/dir/file.txt"), APPEND)) {
+      out.write(encode(" appended"));
+    }
+    assertEquals("committed data appended", readAsString(gfs.getPath("/dir/file.txt")));
+  }
+
+  @Test
+  public void writeSingleBytesMixedWithArrays_theFileDataShouldKeepTheWriteOrder() throws IOException {
+    byte[] expected = new byte[3 * 8192 + 17];
+    new Random(3).nextBytes(expected);
+    try(OutputStream out = Files.newOutputStream(gfs.getPath("/dir/file.txt"))) {
+      int i = 0;
+      while(i < expected.length) {
+        if(i % 1000 == 999) {
+          int len = Math.min(100, expected.length - i);
+          out.write(expected, i, len);
+          i += len;
+        } else
+          out.write(expected[i++]);
+      }
+    }
+    assertArrayEquals(expected, Files.readAllBytes(gfs.getPath("/dir/file.txt")));
+  }
+
+  @Test
+  public void writeSingleBytesWithAppendOption_shouldAppendToTheFileData() throws IOException {
+    try(OutputStream out = Files.newOutputStream(gfs.getPath("/dir/file.txt"), APPEND)) {
+      for(byte b : encode(" appended"))
+        out.write(b);
+    }
+    assertEquals("committed data appended", readAsString(gfs.getPath("/dir/file.txt")));
+  }
+
+  @Test(expected = NoSuchFileException.class)
+  public void writeNonExistentFileWithoutCreateOption_shouldThrowNoSuchFileException() throws IOException {
+    Files.newOutputStream(gfs.getPath("/dir/new.txt"), WRITE);
+  }
+
+  @Test(expected = FileAlreadyExistsException.class)
+  public void writeExistingFileWithCreateNewOption_shouldThrowFileAlreadyExistsException() throws IOException {
+    Files.newOutputStream(gfs.getPath("/dir/file.txt"), CREATE_NEW);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void openWithReadOption_shouldThrowIllegalArgumentException() throws IOException {
+    Files.newOutputStream(gfs.getPath("/dir/file.txt"), READ);
+  }
+
+  @Test
+  public void writeLargeFile_theDataShouldBeInsertedIntoTheRepository() throws IOException {
+    byte[] data = largeData();
+    try(OutputStream out = Files.newOutputStream(gfs.getPath("/dir/large.txt"))) {
+      for(int i = 0; i < data.length; i += 100)
+        out.write(data, i, Math.min(100, data.length - i));
+    }
+    Path file = gfs.getPath("/dir/large.txt");
+    assertTrue(objService.hasObject(calculateBlobId(data)));
+    assertTrue(Files.newByteChannel(file) instanceof GfsBlobStreamChannel);
+    assertArrayEquals(data, Files.readAllBytes(file));
+    assertTrue(gfs.getStatusProvider().isDirty());
+  }
+
+  @Test
+  public void copyLargeLocalFile_theFileShouldBeCommitted() throws IOException {
+    byte[] data = largeData();
+    Path local = Files.createTempFile("parallelgit", ".bin");
+    try {
+      Files.write(local, data);
+      Files.copy(local, gfs.getPath("/dir/copy.bin"));
+    } finally {
+      Files.delete(local);
+    }
+    RevCommit commit = Gfs.commit(gfs).execute().getCommit();
+    assertNotNull(commit);
+    assertEquals(calculateBlobId(data), TreeUtils.getObjectId("dir/copy.bin", commit.getTree(), repo));
+  }
+
+  @Nonnull
+  private static byte[] largeData() {
+    byte[] ret = new byte[LARGE_FILE_THRESHOLD * 4];
+    new Random(0).nextBytes(ret);
+    return ret;
+  }
+
+}
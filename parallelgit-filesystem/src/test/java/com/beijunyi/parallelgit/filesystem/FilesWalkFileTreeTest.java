@@ -0,0 +1,77 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import javax.annotation.Nonnull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.nio.file.FileVisitResult.CONTINUE;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.junit.Assert.*;
+
+public class FilesWalkFileTreeTest extends AbstractGitFileSystemTest {
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    writeToCache("/a.txt", "a");
+    writeToCache("/dir/b.txt", "bb");
+    writeToCache("/dir/sub/c.txt", "ccc");
+    commitToMaster();
+    initGitFileSystemForBranch(MASTER);
+  }
+
+  @Test
+  public void walkFileTree_shouldVisitEveryFileWithItsAttributes() throws IOException {
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("/a.txt", 1L);
+    expected.put("/dir/b.txt", 2L);
+    expected.put("/dir/sub/c.txt", 3L);
+    assertEquals(expected, walkFiles());
+  }
+
+  @Test
+  public void walkFileTree_shouldVisitEveryDirectory() throws IOException {
+    final List<String> dirs = new ArrayList<>();
+    Files.walkFileTree(gfs.getPath("/"), new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        assertTrue(attrs.isDirectory());
+        dirs.add(dir.toString());
+        return CONTINUE;
+      }
+    });
+    assertEquals(Arrays.asList("/", "/dir", "/dir/sub"), dirs);
+  }
+
+  @Test
+  public void walkFileTreeAfterChanges_theAttributesShouldReflectTheChanges() throws IOException {
+    writeToGfs("/dir/b.txt", "changed");
+    writeToGfs("/dir/new.txt", "new");
+    Files.delete(gfs.getPath("/a.txt"));
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("/dir/b.txt", 7L);
+    expected.put("/dir/new.txt", 3L);
+    expected.put("/dir/sub/c.txt", 3L);
+    assertEquals(expected, walkFiles());
+  }
+
+  @Nonnull
+  private Map<String, Long> walkFiles() throws IOException {
+    final Map<String, Long> ret = new HashMap<>();
+    Files.walkFileTree(gfs.getPath("/"), new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        assertTrue(attrs.isRegularFile());
+        ret.put(file.toString(), attrs.size());
+        return CONTINUE;
+      }
+    });
+    return ret;
+  }
+
+}
@@ -4,27 +4,32 @@ import java.io.IOException;
 
 import org.junit.Test;
 
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.UNLIMITED_LOADED_BYTES;
 import static junit.framework.TestCase.assertEquals;
 
 public class GfsFileStoreSpaceTest extends PreSetupGitFileSystemTest {
 
   @Test
-  public void getTotalSpace_shouldReturnZero() throws IOException {
-    assertEquals(0L, fileStore.getTotalSpace());
-    assertEquals(0L, fileStore.getAttribute("totalSpace"));
+  public void getTotalSpace_shouldReturnTheLoadedBytesLimit() throws IOException {
+    assertEquals(UNLIMITED_LOADED_BYTES, fileStore.getTotalSpace());
+    assertEquals(UNLIMITED_LOADED_BYTES, fileStore.getAttribute("totalSpace"));
   }
 
   @Test
-  public void getUnallocatedSpace_shouldReturnZero() throws IOException {
-    assertEquals(0L, fileStore.getUnallocatedSpace());
-    assertEquals(0L, fileStore.getAttribute("unallocatedSpace"));
+  public void getUnallocatedSpace_shouldReturnTheRemainingBudget() throws IOException {
+    assertEquals(UNLIMITED_LOADED_BYTES - fileStore.getLoadedBytes(), fileStore.getUnallocatedSpace());
+    assertEquals(UNLIMITED_LOADED_BYTES - fileStore.getLoadedBytes(), fileStore.getAttribute("unallocatedSpace"));
   }
 
   @Test
-  public void getUsableSpace_shouldReturnTheAmountOfFreeMemory() throws IOException {
-    assertEquals(0L, fileStore.getUsableSpace());
-    assertEquals(0L, fileStore.getAttribute("usableSpace"));
+  public void getUsableSpace_shouldReturnTheRemainingBudget() throws IOException {
+    assertEquals(UNLIMITED_LOADED_BYTES - fileStore.getLoadedBytes(), fileStore.getUsableSpace());
+    assertEquals(UNLIMITED_LOADED_BYTES - fileStore.getLoadedBytes(), fileStore.getAttribute("usableSpace"));
   }
 
+  @Test
+  public void getLoadedBytes_shouldReturnTheSizeOfTheLoadedData() throws IOException {
+    assertEquals(fileStore.getLoadedBytes(), fileStore.getAttribute("loadedBytes"));
+  }
 
 }
@@ -0,0 +1,116 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import com.beijunyi.parallelgit.utils.io.BlobSnapshot;
+import com.beijunyi.parallelgit.utils.io.TreeSnapshot;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.junit.Assert.*;
+
+public class GfsObjectCacheTest extends AbstractGitFileSystemTest {
+
+  private GfsObjectCache cache;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    cache = new GfsObjectCache();
+  }
+
+  @Test
+  public void getBlobAfterPut_shouldReturnTheSameSnapshot() {
+    BlobSnapshot blob = BlobSnapshot.capture(someBytes());
+    cache.put(blob);
+    assertSame(blob, cache.getBlob(blob.getId()));
+  }
+
+  @Test
+  public void getTreeWithBlobId_shouldReturnNull() {
+    BlobSnapshot blob = BlobSnapshot.capture(someBytes());
+    cache.put(blob);
+    assertNull(cache.getTree(blob.getId()));
+  }
+
+  @Test
+  public void putBlobLargerThanMaxBlobSize_shouldNotCacheTheBlob() {
+    cache = new GfsObjectCache(1024 * 1024, 16);
+    BlobSnapshot blob = BlobSnapshot.capture(new byte[17]);
+    cache.put(blob);
+    assertNull(cache.getBlob(blob.getId()));
+    assertEquals(0, cache.getEntryCount());
+  }
+
+  @Test
+  public void putBeyondMaxBytes_shouldEvictLeastRecentlyUsedObjects() {
+    cache = new GfsObjectCache(16 * 1024, 1024);
+    for(int i = 0; i < 1024; i++)
+      cache.put(BlobSnapshot.capture(encode("blob " + i)));
+    assertTrue(cache.getSize() <= cache.getMaxBytes());
+    assertTrue(cache.getEvictionCount() > 0);
+    assertNull(cache.getBlob(BlobSnapshot.capture(encode("blob 0")).getId()));
+  }
+
+  @Test
+  public void getHitsAndMisses_shouldBeCounted() {
+    BlobSnapshot blob = BlobSnapshot.capture(someBytes());
+    cache.getBlob(blob.getId());
+    cache.put(blob);
+    cache.getBlob(blob.getId());
+    cache.getBlob(blob.getId());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(2, cache.getHitCount());
+  }
+
+  @Test
+  public void invalidateAll_shouldRemoveAllObjects() {
+    cache.put(BlobSnapshot.capture(someBytes()));
+    cache.invalidateAll();
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void readTreeFromTwoFileSystemsSharingCache_shouldLoadTheTreeOnce() throws IOException {
+    writeToCache("/dir/file.txt");
+    ObjectId commit = commitToMaster();
+    try(GitFileSystem gfs1 = Gfs.newFileSystem(repo(repo).branch(MASTER).objectCache(cache));
+        GitFileSystem gfs2 = Gfs.newFileSystem(repo(repo).commit(commit).objectCache(cache))) {
+      assertTrue(Files.exists(gfs1.getPath("/dir/file.txt")));
+      long misses = cache.getMissCount();
+      assertTrue(Files.exists(gfs2.getPath("/dir/file.txt")));
+      assertEquals(misses, cache.getMissCount());
+      assertTrue(cache.getHitCount() > 0);
+    }
+  }
+
+  @Test
+  public void readTreeFromCachingFileSystem_shouldReturnCachedSnapshot() throws IOException {
+    writeToCache("/file.txt");
+    commitToMaster();
+    try(GitFileSystem gfs = Gfs.newFileSystem(repo(repo).branch(MASTER).objectCache(cache))) {
+      ObjectId tree = gfs.getStatusProvider().commit().getTree();
+      TreeSnapshot snapshot = gfs.getObjectService().readTree(tree);
+      assertSame(snapshot, gfs.getObjectService().readTree(tree));
+    }
+  }
+
+  @Test
+  public void writeToFileWithCachedBlob_shouldNotModifyTheCachedBlob() throws IOException {
+    writeToCache("/file.txt", "some text");
+    commitToMaster();
+    try(GitFileSystem gfs1 = Gfs.newFileSystem(repo(repo).branch(MASTER).objectCache(cache));
+        GitFileSystem gfs2 = Gfs.newFileSystem(repo(repo).branch(MASTER).objectCache(cache))) {
+      Files.write(gfs1.getPath("/file.txt"), encode("SOME"), StandardOpenOption.WRITE);
+      assertEquals("SOME text", new String(Files.readAllBytes(gfs1.getPath("/file.txt")), "UTF-8"));
+      assertEquals("some text", new String(Files.readAllBytes(gfs2.getPath("/file.txt")), "UTF-8"));
+    }
+  }
+
+}
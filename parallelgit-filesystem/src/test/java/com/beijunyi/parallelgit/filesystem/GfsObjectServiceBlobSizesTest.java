@@ -0,0 +1,43 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+
+public class GfsObjectServiceBlobSizesTest extends PreSetupGitFileSystemTest {
+
+  private final List<ObjectId> blobs = new ArrayList<>();
+
+  @Before
+  public void setUp() throws IOException {
+    for(int i = 0; i < 16; i++)
+      blobs.add(writeToCache("/file" + i + ".txt", contentOf(i)));
+  }
+
+  @Test
+  public void getBlobSizes_shouldReturnTheSizeOfEachBlob() throws IOException {
+    Map<ObjectId, Long> sizes = objService.getBlobSizes(blobs);
+    assertEquals(blobs.size(), sizes.size());
+    for(int i = 0; i < blobs.size(); i++)
+      assertEquals(contentOf(i).length(), (long) sizes.get(blobs.get(i)));
+  }
+
+  @Test(expected = MissingObjectException.class)
+  public void getBlobSizesWhenBlobDoesNotExist_shouldThrowMissingObjectException() throws IOException {
+    objService.getBlobSizes(singletonList(someObjectId()));
+  }
+
+  private static String contentOf(int index) {
+    return "content of file " + index + " " + new String(new char[index]).replace('\0', 'x');
+  }
+
+}
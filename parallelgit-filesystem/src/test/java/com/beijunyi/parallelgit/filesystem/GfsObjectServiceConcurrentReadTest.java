@@ -0,0 +1,95 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.ClosedFileSystemException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.junit.Assert.assertTrue;
+
+public class GfsObjectServiceConcurrentReadTest extends AbstractGitFileSystemTest {
+
+  private static final int THREADS = 8;
+  private static final int FILES = 64;
+
+  private final List<ObjectId> blobs = new ArrayList<>();
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    for(int i = 0; i < FILES; i++)
+      blobs.add(writeToCache("/file" + i + ".txt", contentOf(i)));
+    commitToMaster();
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).readerPoolSize(4)));
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @After
+  public void shutdownExecutor() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void readBlobsFromMultipleThreads_eachThreadShouldGetTheCorrectContent() throws Exception {
+    List<Future<Boolean>> results = new ArrayList<>();
+    for(int t = 0; t < THREADS; t++) {
+      results.add(executor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws IOException {
+          for(int i = 0; i < FILES; i++) {
+            if(!objService.hasObject(blobs.get(i)))
+              return false;
+            if(objService.getBlobSize(blobs.get(i)) != contentOf(i).length)
+              return false;
+            if(!new String(objService.readBlob(blobs.get(i)).getData(), "UTF-8").equals("content " + i))
+              return false;
+          }
+          return true;
+        }
+      }));
+    }
+    for(Future<Boolean> result : results)
+      assertTrue(result.get(30, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void readFilesFromMultipleThreads_eachThreadShouldGetTheCorrectContent() throws Exception {
+    List<Future<Boolean>> results = new ArrayList<>();
+    for(int t = 0; t < THREADS; t++) {
+      final int offset = t;
+      results.add(executor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws IOException {
+          for(int i = 0; i < FILES; i++) {
+            int index = (i + offset) % FILES;
+            if(!readAsString(gfs.getPath("/file" + index + ".txt")).equals("content " + index))
+              return false;
+          }
+          return true;
+        }
+      }));
+    }
+    for(Future<Boolean> result : results)
+      assertTrue(result.get(30, TimeUnit.SECONDS));
+  }
+
+  @Test(expected = ClosedFileSystemException.class)
+  public void readAfterFileSystemClosed_shouldThrowClosedFileSystemException() throws IOException {
+    gfs.close();
+    objService.readBlob(blobs.get(0));
+  }
+
+  private static byte[] contentOf(int index) {
+    return encode("content " + index);
+  }
+
+}
@@ -0,0 +1,113 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.beijunyi.parallelgit.utils.TreeUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.eclipse.jgit.lib.Constants.encode;
+import static org.junit.Assert.*;
+
+public class GfsObjectServicePullObjectTest extends AbstractGitFileSystemTest {
+
+  private static final int FILES = 100;
+
+  private Repository targetRepo;
+  private GitFileSystem targetGfs;
+  private GfsObjectService targetObjService;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    targetRepo = new TestRepository();
+    targetGfs = Gfs.newFileSystem(targetRepo);
+    targetObjService = targetGfs.getObjectService();
+  }
+
+  @After
+  public void closeTargetSystem() throws IOException {
+    targetGfs.close();
+    targetRepo.close();
+  }
+
+  @Test
+  public void pullLargeTree_allObjectsShouldExistInTheTargetRepository() throws IOException {
+    for(int i = 0; i < FILES; i++)
+      writeToCache("/dir/sub" + (i % 5) + "/file" + i + ".txt", "file " + i);
+    RevCommit commit = commitToMaster();
+    initGitFileSystem();
+    ObjectId tree = TreeUtils.getObjectId("dir", commit.getTree(), repo);
+    assertNotNull(tree);
+
+    targetObjService.pullObject(tree, objService);
+    try(TreeWalk tw = TreeWalk.forPath(targetRepo, "sub3/file8.txt", tree)) {
+      assertNotNull(tw);
+      assertArrayEquals(encode("file 8"), targetRepo.open(tw.getObjectId(0)).getBytes());
+    }
+    for(int i = 0; i < FILES; i++)
+      assertTrue(targetObjService.hasObject(calculateBlobId(encode("file " + i))));
+  }
+
+  @Test
+  public void pullSmallTree_allObjectsShouldExistInTheTargetRepository() throws IOException {
+    writeToCache("/dir/file1.txt", "file 1");
+    writeToCache("/dir/file2.txt", "file 2");
+    RevCommit commit = commitToMaster();
+    initGitFileSystem();
+    ObjectId tree = TreeUtils.getObjectId("dir", commit.getTree(), repo);
+    assertNotNull(tree);
+
+    targetObjService.pullObject(tree, objService);
+    assertTrue(targetObjService.hasObject(tree));
+    assertTrue(targetObjService.hasObject(calculateBlobId(encode("file 1"))));
+    assertTrue(targetObjService.hasObject(calculateBlobId(encode("file 2"))));
+  }
+
+  @Test
+  public void pullBlob_theBlobShouldExistInTheTargetRepository() throws IOException {
+    ObjectId blob = writeToCache("/file.txt", "some data");
+    commitToMaster();
+    initGitFileSystem();
+
+    targetObjService.pullObject(blob, objService);
+    assertArrayEquals(encode("some data"), targetRepo.open(blob).getBytes());
+  }
+
+  @Test
+  public void pullTreeWhenTargetHasSomeSubtrees_allObjectsShouldExistInTheTargetRepository() throws IOException {
+    for(int i = 0; i < FILES; i++)
+      writeToCache("/sub" + (i % 5) + "/file" + i + ".txt", "file " + i);
+    RevCommit commit = commitToMaster();
+    initGitFileSystem();
+    ObjectId shared = TreeUtils.getObjectId("sub0", commit.getTree(), repo);
+    assertNotNull(shared);
+    targetObjService.pullObject(shared, objService);
+
+    targetObjService.pullObject(commit.getTree(), objService);
+    for(int i = 0; i < FILES; i++)
+      assertTrue(targetObjService.hasObject(calculateBlobId(encode("file " + i))));
+  }
+
+  @Test
+  public void copyLargeDirectoryAcrossSystems_theTargetShouldHaveTheSameData() throws IOException {
+    for(int i = 0; i < FILES; i++)
+      writeToCache("/dir/file" + i + ".txt", "file " + i);
+    commitToMaster();
+    initGitFileSystem();
+
+    Files.copy(gfs.getPath("/dir"), targetGfs.getPath("/copy"));
+    ObjectId tree = targetGfs.flush();
+    try(TreeWalk tw = TreeWalk.forPath(targetRepo, "copy/file42.txt", tree)) {
+      assertNotNull(tw);
+      assertArrayEquals(encode("file 42"), targetRepo.open(tw.getObjectId(0)).getBytes());
+    }
+  }
+
+}
@@ -0,0 +1,105 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+import com.beijunyi.parallelgit.utils.io.GitFileEntry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.eclipse.jgit.lib.FileMode.REGULAR_FILE;
+import static org.junit.Assert.*;
+
+public class GfsStatusProviderChangesTest extends AbstractGitFileSystemTest {
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    writeToCache("/dir/file.txt", "file");
+    writeToCache("/other.txt", "other");
+    commitToMaster();
+    initGitFileSystemForBranch(MASTER);
+  }
+
+  @Test
+  public void changesOfCleanFileSystem_shouldReturnEmptyMap() throws IOException {
+    assertTrue(gfs.getStatusProvider().changes().isEmpty());
+  }
+
+  @Test
+  public void changesAfterFileIsModified_shouldContainThePathAndItsOriginalEntry() throws IOException {
+    Files.readAllBytes(gfs.getPath("/dir/file.txt"));
+    writeToGfs("/dir/file.txt", "changed");
+    Map<String, GitFileEntry> changes = gfs.getStatusProvider().changes();
+    assertEquals(1, changes.size());
+    assertEquals(GitFileEntry.newEntry(calculateBlobId(encode("file")), REGULAR_FILE), changes.get("/dir/file.txt"));
+  }
+
+  @Test
+  public void changesAfterFileIsCreated_shouldContainThePathWithMissingOriginalEntry() throws IOException {
+    writeToGfs("/dir/new.txt", "new");
+    assertTrue(gfs.getStatusProvider().changes().get("/dir/new.txt").isMissing());
+  }
+
+  @Test
+  public void changesAfterFileIsDeleted_shouldContainThePathAndItsOriginalEntry() throws IOException {
+    Files.delete(gfs.getPath("/other.txt"));
+    assertEquals(GitFileEntry.newEntry(calculateBlobId(encode("other")), REGULAR_FILE), gfs.getStatusProvider().changes().get("/other.txt"));
+  }
+
+  @Test
+  public void changesAfterFileIsChangedBack_shouldReturnEmptyMap() throws IOException {
+    writeToGfs("/dir/file.txt", "changed");
+    writeToGfs("/dir/file.txt", "file");
+    assertTrue(gfs.getStatusProvider().changes().isEmpty());
+  }
+
+  @Test
+  public void changesAfterFileIsMovedAndMovedBack_shouldReturnEmptyMap() throws IOException {
+    Files.move(gfs.getPath("/dir/file.txt"), gfs.getPath("/dir/moved.txt"));
+    Files.move(gfs.getPath("/dir/moved.txt"), gfs.getPath("/dir/file.txt"));
+    assertTrue(gfs.getStatusProvider().changes().isEmpty());
+  }
+
+  @Test
+  public void changesAfterFileInWideDirectoryIsModified_shouldContainThePath() throws IOException {
+    for(int i = 0; i < 64; i++)
+      writeToGfs("/wide/file" + i + ".txt", "file " + i);
+    Gfs.commit(gfs).execute();
+    writeToGfs("/wide/file63.txt", "changed");
+    Map<String, GitFileEntry> changes = gfs.getStatusProvider().changes();
+    assertEquals(1, changes.size());
+    assertEquals(GitFileEntry.newEntry(calculateBlobId(encode("file 63")), REGULAR_FILE), changes.get("/wide/file63.txt"));
+  }
+
+  @Test
+  public void changesOfForkedFileSystem_shouldEqualTheChangesOfTheSource() throws IOException {
+    writeToGfs("/dir/file.txt", "changed");
+    Files.delete(gfs.getPath("/other.txt"));
+    try(GitFileSystem fork = gfs.fork()) {
+      assertEquals(gfs.getStatusProvider().changes(), fork.getStatusProvider().changes());
+    }
+  }
+
+  @Test
+  public void changesAfterCheckoutKeepingLocalChanges_shouldStillContainTheChangedPath() throws IOException {
+    writeToCache("/dir/file.txt", "file");
+    writeToCache("/other.txt", "other target");
+    commitToBranch("target");
+    writeToGfs("/dir/new.txt", "new");
+    Gfs.checkout(gfs).target("target").execute();
+    Map<String, GitFileEntry> changes = gfs.getStatusProvider().changes();
+    assertEquals(1, changes.size());
+    assertTrue(changes.get("/dir/new.txt").isMissing());
+  }
+
+  @Test
+  public void changesAfterCommit_shouldReturnEmptyMap() throws IOException {
+    writeToGfs("/dir/file.txt", "changed");
+    Gfs.commit(gfs).execute();
+    assertTrue(gfs.getStatusProvider().changes().isEmpty());
+  }
+
+}
@@ -34,6 +34,43 @@ public class GfsStatusProviderIsDirtyTest extends PreSetupGitFileSystemTest {
     assertFalse(statusProvider.isDirty());
   }
 
+  @Test
+  public void testIsDirtyWhenFileIsChangedAndChangedBack_shouldReturnFalse() throws IOException {
+    Files.write(gfs.getPath("/some_file.txt"), someBytes());
+    Gfs.commit(gfs).execute();
+    byte[] original = Files.readAllBytes(gfs.getPath("/some_file.txt"));
+    Files.write(gfs.getPath("/some_file.txt"), someBytes());
+    Files.write(gfs.getPath("/some_file.txt"), original);
+    assertFalse(statusProvider.isDirty());
+  }
+
+  @Test
+  public void testIsDirtyWhenFileIsDeletedAndRecreated_shouldReturnFalse() throws IOException {
+    writeToGfs("/dir/some_file.txt", someBytes());
+    Gfs.commit(gfs).execute();
+    byte[] original = Files.readAllBytes(gfs.getPath("/dir/some_file.txt"));
+    Files.delete(gfs.getPath("/dir/some_file.txt"));
+    Files.write(gfs.getPath("/dir/some_file.txt"), original);
+    assertFalse(statusProvider.isDirty());
+  }
 
+  @Test
+  public void testIsDirtyWhenEmptyDirectoryIsCreated_shouldReturnFalse() throws IOException {
+    Files.createDirectories(gfs.getPath("/empty/dir"));
+    assertFalse(statusProvider.isDirty());
+  }
+
+  @Test
+  public void testIsDirtyWhenFileInDeletedDirectoryIsChanged_shouldReturnTrue() throws IOException {
+    Files.createDirectories(gfs.getPath("/dir"));
+    Files.write(gfs.getPath("/dir/some_file.txt"), someBytes());
+    Gfs.commit(gfs).execute();
+    Files.write(gfs.getPath("/dir/some_file.txt"), someBytes());
+    Files.write(gfs.getPath("/dir/other_file.txt"), someBytes());
+    Files.delete(gfs.getPath("/dir/some_file.txt"));
+    Files.delete(gfs.getPath("/dir/other_file.txt"));
+    Files.delete(gfs.getPath("/dir"));
+    assertTrue(statusProvider.isDirty());
+  }
 
 }
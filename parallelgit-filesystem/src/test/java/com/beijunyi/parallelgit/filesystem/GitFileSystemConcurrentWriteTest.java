@@ -0,0 +1,177 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.junit.Assert.*;
+
+public class GitFileSystemConcurrentWriteTest extends AbstractGitFileSystemTest {
+
+  private static final int THREADS = 8;
+  private static final int FILES = 32;
+  private static final int ROUNDS = 4;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    writeToCache("/existing/file.txt");
+    commitToMaster();
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER)));
+    executor = Executors.newFixedThreadPool(THREADS + 1);
+  }
+
+  @After
+  public void shutdownExecutor() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void writeDisjointSubtreesFromMultipleThreads_theResultShouldEqualTheSequentialResult() throws Exception {
+    List<Future<?>> writers = new ArrayList<>();
+    for(int t = 0; t < THREADS; t++)
+      writers.add(executor.submit(writer(gfs, t)));
+    awaitAll(writers);
+    assertEquals(sequentialResult(), gfs.flush());
+  }
+
+  @Test
+  public void writeFromMultipleThreadsWhileFlushing_noChangeShouldBeLost() throws Exception {
+    final AtomicBoolean done = new AtomicBoolean(false);
+    Future<?> flusher = executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        while(!done.get())
+          gfs.flush();
+        return null;
+      }
+    });
+    List<Future<?>> writers = new ArrayList<>();
+    for(int t = 0; t < THREADS; t++)
+      writers.add(executor.submit(writer(gfs, t)));
+    try {
+      awaitAll(writers);
+    } finally {
+      done.set(true);
+    }
+    flusher.get(60, TimeUnit.SECONDS);
+    assertEquals(sequentialResult(), gfs.flush());
+  }
+
+  @Test
+  public void createFilesInTheSameDirectoryFromMultipleThreads_allFilesShouldExist() throws Exception {
+    Files.createDirectory(gfs.getPath("/shared"));
+    List<Future<?>> writers = new ArrayList<>();
+    for(int t = 0; t < THREADS; t++) {
+      final int thread = t;
+      writers.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          for(int f = 0; f < FILES; f++)
+            Files.write(gfs.getPath("/shared/file" + thread + "_" + f + ".txt"), encode(thread + "_" + f));
+          return null;
+        }
+      }));
+    }
+    awaitAll(writers);
+    for(int t = 0; t < THREADS; t++)
+      for(int f = 0; f < FILES; f++)
+        assertEquals(t + "_" + f, readAsString(gfs.getPath("/shared/file" + t + "_" + f + ".txt")));
+    try(DirectoryStream<Path> children = Files.newDirectoryStream(gfs.getPath("/shared"))) {
+      int count = 0;
+      for(Path ignored : children)
+        count++;
+      assertEquals(THREADS * FILES, count);
+    }
+  }
+
+  @Test
+  public void writeWhileReadersReloadEvictedData_noChangeShouldBeLost() throws Exception {
+    try(final GitFileSystem limited = Gfs.newFileSystem(repo(repo).branch(MASTER).loadedBytesLimit(1))) {
+      final AtomicBoolean done = new AtomicBoolean(false);
+      List<Future<?>> readers = new ArrayList<>();
+      for(int t = 0; t < THREADS / 2; t++) {
+        readers.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            while(!done.get()) {
+              Files.readAllBytes(limited.getPath("/existing/file.txt"));
+              Files.exists(limited.getPath("/existing/missing.txt"));
+            }
+            return null;
+          }
+        }));
+      }
+      List<Future<?>> writers = new ArrayList<>();
+      for(int t = 0; t < THREADS / 2; t++) {
+        final int thread = t;
+        writers.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            for(int f = 0; f < FILES; f++)
+              Files.write(limited.getPath("/existing/file" + thread + "_" + f + ".txt"), encode(thread + "_" + f));
+            return null;
+          }
+        }));
+      }
+      try {
+        awaitAll(writers);
+      } finally {
+        done.set(true);
+      }
+      awaitAll(readers);
+      for(int t = 0; t < THREADS / 2; t++)
+        for(int f = 0; f < FILES; f++)
+          assertEquals(t + "_" + f, readAsString(limited.getPath("/existing/file" + t + "_" + f + ".txt")));
+    }
+  }
+
+  private ObjectId sequentialResult() throws Exception {
+    try(GitFileSystem sequential = Gfs.newFileSystem(repo(repo).branch(MASTER))) {
+      for(int t = 0; t < THREADS; t++)
+        writer(sequential, t).call();
+      return sequential.flush();
+    }
+  }
+
+  private static Callable<Void> writer(final GitFileSystem gfs, final int thread) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        for(int r = 0; r < ROUNDS; r++) {
+          Files.createDirectories(gfs.getPath("/thread" + thread + "/round" + r));
+          for(int f = 0; f < FILES; f++)
+            Files.write(gfs.getPath(pathOf(thread, r, f)), encode(pathOf(thread, r, f)));
+          if(r > 0)
+            Files.delete(gfs.getPath(pathOf(thread, r - 1, 0)));
+        }
+        Files.write(gfs.getPath("/existing/file" + thread + ".txt"), encode("thread " + thread));
+        return null;
+      }
+    };
+  }
+
+  private static void awaitAll(List<Future<?>> futures) throws Exception {
+    for(Future<?> future : futures)
+      future.get(60, TimeUnit.SECONDS);
+  }
+
+  private static String pathOf(int thread, int round, int file) {
+    return "/thread" + thread + "/round" + round + "/file" + file + ".txt";
+  }
+
+}
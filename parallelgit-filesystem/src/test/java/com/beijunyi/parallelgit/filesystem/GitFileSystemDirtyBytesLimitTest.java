@@ -0,0 +1,148 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+
+import com.beijunyi.parallelgit.utils.TreeUtils;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.junit.Assert.*;
+
+public class GitFileSystemDirtyBytesLimitTest extends AbstractGitFileSystemTest {
+
+  private static final int LIMIT = 64;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    writeSomethingToCache();
+    commitToMaster();
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).dirtyBytesLimit(LIMIT)));
+  }
+
+  @Test
+  public void writeFileWithinLimit_shouldKeepTheDataInMemory() throws IOException {
+    Files.write(gfs.getPath("/file.txt"), new byte[LIMIT]);
+    assertEquals(LIMIT, objService.getDirtyBytes());
+    assertFalse(objService.hasObject(calculateBlobId(new byte[LIMIT])));
+  }
+
+  @Test
+  public void writeFileBeyondLimit_shouldKeepItPendingUntilTheSpillsCrossTheLimit() throws IOException {
+    Files.write(gfs.getPath("/file1.txt"), new byte[LIMIT]);
+    byte[] data = filledBytes(LIMIT / 2, 2);
+    Files.write(gfs.getPath("/file2.txt"), data);
+    assertEquals(LIMIT, objService.getDirtyBytes());
+    assertEquals(LIMIT / 2, objService.getSpilledFiles().getPendingBytes());
+    assertFalse(objService.hasObject(calculateBlobId(data)));
+  }
+
+  @Test
+  public void writeFilesBeyondLimit_shouldInsertTheSpilledBlobsInOneBatch() throws IOException {
+    Files.write(gfs.getPath("/file1.txt"), new byte[LIMIT]);
+    byte[] data1 = filledBytes(LIMIT / 2, 2);
+    byte[] data2 = filledBytes(LIMIT / 2, 3);
+    Files.write(gfs.getPath("/file2.txt"), data1);
+    Files.write(gfs.getPath("/file3.txt"), data2);
+    assertEquals(LIMIT, objService.getDirtyBytes());
+    assertEquals(0, objService.getSpilledFiles().getPendingBytes());
+    assertTrue(objService.hasObject(calculateBlobId(data1)));
+    assertTrue(objService.hasObject(calculateBlobId(data2)));
+  }
+
+  @Test
+  public void flushWithPendingSpills_shouldReleaseThem() throws IOException {
+    Files.write(gfs.getPath("/file1.txt"), new byte[LIMIT]);
+    Files.write(gfs.getPath("/file2.txt"), filledBytes(LIMIT / 2, 2));
+    gfs.flush();
+    assertEquals(0, objService.getSpilledFiles().getPendingBytes());
+  }
+
+  @Test
+  public void readSpilledFile_shouldReturnTheFileData() throws IOException {
+    Files.write(gfs.getPath("/file1.txt"), new byte[LIMIT]);
+    byte[] data = encodeASCII("spilled data");
+    Files.write(gfs.getPath("/file2.txt"), data);
+    assertArrayEquals(data, Files.readAllBytes(gfs.getPath("/file2.txt")));
+    assertEquals(data.length, Files.size(gfs.getPath("/file2.txt")));
+  }
+
+  @Test
+  public void flushWithSpilledFile_theResultShouldContainTheFile() throws IOException {
+    Files.write(gfs.getPath("/file1.txt"), new byte[LIMIT]);
+    byte[] data = encodeASCII("spilled data");
+    Files.write(gfs.getPath("/file2.txt"), data);
+    AnyObjectId result = gfs.flush();
+    try(TreeWalk tw = TreeUtils.forPath("/file2.txt", result, repo)) {
+      assertNotNull(tw);
+      assertArrayEquals(data, repo.open(tw.getObjectId(0)).getBytes());
+    }
+  }
+
+  @Test
+  public void flush_shouldReleaseDirtyBytes() throws IOException {
+    Files.write(gfs.getPath("/file.txt"), someBytes());
+    gfs.flush();
+    assertEquals(0, objService.getDirtyBytes());
+  }
+
+  @Test
+  public void overwriteFile_shouldOnlyCountTheNewData() throws IOException {
+    Files.write(gfs.getPath("/file.txt"), new byte[LIMIT]);
+    Files.write(gfs.getPath("/file.txt"), new byte[LIMIT / 2]);
+    assertEquals(LIMIT / 2, objService.getDirtyBytes());
+  }
+
+  @Test
+  public void deleteFile_shouldReleaseDirtyBytes() throws IOException {
+    Files.write(gfs.getPath("/file.txt"), someBytes());
+    Files.delete(gfs.getPath("/file.txt"));
+    assertEquals(0, objService.getDirtyBytes());
+  }
+
+  @Test
+  public void deleteDirectory_shouldReleaseDirtyBytesOfItsFiles() throws IOException {
+    Files.createDirectory(gfs.getPath("/dir"));
+    Files.write(gfs.getPath("/dir/file.txt"), someBytes());
+    Files.delete(gfs.getPath("/dir/file.txt"));
+    Files.delete(gfs.getPath("/dir"));
+    assertEquals(0, objService.getDirtyBytes());
+  }
+
+  @Test
+  public void commitWithSpilledFiles_shouldSucceed() throws IOException {
+    for(int i = 0; i < 16; i++)
+      Files.write(gfs.getPath("/file" + i + ".txt"), encodeASCII("file data " + i));
+    assertNotNull(Gfs.commit(gfs).execute().getCommit());
+    assertEquals(0, objService.getDirtyBytes());
+    for(int i = 0; i < 16; i++)
+      assertEquals("file data " + i, readAsString(gfs.getPath("/file" + i + ".txt")));
+  }
+
+  @Test
+  public void forkWithDirtyFile_theForkShouldReserveItsDirtyBytes() throws IOException {
+    Files.write(gfs.getPath("/file.txt"), new byte[LIMIT]);
+    gfs.getFileStore().getRoot().getObjectId(false);
+    try(GitFileSystem fork = gfs.fork()) {
+      assertEquals(LIMIT, fork.getObjectService().getDirtyBytes());
+      Files.write(fork.getPath("/file2.txt"), someBytes());
+      assertEquals(LIMIT, fork.getObjectService().getDirtyBytes());
+    }
+    assertEquals(LIMIT, objService.getDirtyBytes());
+  }
+
+  @Nonnull
+  private static byte[] filledBytes(int size, int value) {
+    byte[] ret = new byte[size];
+    Arrays.fill(ret, (byte) value);
+    return ret;
+  }
+
+}
@@ -0,0 +1,94 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.beijunyi.parallelgit.utils.BranchUtils;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.junit.Assert.*;
+
+public class GitFileSystemForkTest extends AbstractGitFileSystemTest {
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    writeToCache("/dir/file.txt", "committed");
+    writeToCache("/other/file.txt", "other");
+    commitToMaster();
+    initGitFileSystemForBranch(MASTER);
+  }
+
+  @Test
+  public void forkCleanFileSystem_theForkShouldHaveTheSameTree() throws IOException {
+    try(GitFileSystem fork = gfs.fork()) {
+      assertFalse(fork.getStatusProvider().isDirty());
+      assertEquals(gfs.flush(), fork.flush());
+    }
+  }
+
+  @Test
+  public void forkDirtyFileSystem_theForkShouldContainTheUncommittedChanges() throws IOException {
+    writeToGfs("/dir/file.txt", "changed");
+    writeToGfs("/dir/new.txt", "new");
+    try(GitFileSystem fork = gfs.fork()) {
+      assertTrue(fork.getStatusProvider().isDirty());
+      assertEquals("changed", readAsString(fork.getPath("/dir/file.txt")));
+      assertEquals("new", readAsString(fork.getPath("/dir/new.txt")));
+      assertEquals(gfs.flush(), fork.flush());
+    }
+  }
+
+  @Test
+  public void writeToFork_theSourceShouldNotBeAffected() throws IOException {
+    writeToGfs("/dir/file.txt", "changed");
+    try(GitFileSystem fork = gfs.fork()) {
+      Files.write(fork.getPath("/dir/file.txt"), encode("fork"));
+      Files.delete(fork.getPath("/other/file.txt"));
+      assertEquals("changed", readAsString(gfs.getPath("/dir/file.txt")));
+      assertTrue(Files.exists(gfs.getPath("/other/file.txt")));
+    }
+  }
+
+  @Test
+  public void writeToSource_theForkShouldNotBeAffected() throws IOException {
+    writeToGfs("/dir/file.txt", "changed");
+    try(GitFileSystem fork = gfs.fork()) {
+      writeToGfs("/dir/file.txt", "source");
+      Files.delete(gfs.getPath("/other/file.txt"));
+      assertEquals("changed", readAsString(fork.getPath("/dir/file.txt")));
+      assertTrue(Files.exists(fork.getPath("/other/file.txt")));
+    }
+  }
+
+  @Test
+  public void forkFileSystem_theForkShouldBeOnTheSameBranchAndCommit() throws IOException {
+    try(GitFileSystem fork = gfs.fork()) {
+      assertEquals(MASTER, fork.getStatusProvider().branch());
+      assertEquals(gfs.getStatusProvider().commit(), fork.getStatusProvider().commit());
+    }
+  }
+
+  @Test
+  public void commitFork_theCommitShouldContainTheForkChanges() throws IOException {
+    writeToGfs("/dir/file.txt", "changed");
+    try(GitFileSystem fork = gfs.fork()) {
+      Files.write(fork.getPath("/dir/fork.txt"), encode("fork"));
+      RevCommit commit = Gfs.commit(fork).message("fork").execute().getCommit();
+      assertNotNull(commit);
+      assertEquals(commit, BranchUtils.getHeadCommit(MASTER, repo));
+      assertFalse(Files.exists(gfs.getPath("/dir/fork.txt")));
+    }
+  }
+
+  @Test
+  public void closeFork_theSourceShouldRemainUsable() throws IOException {
+    gfs.fork().close();
+    writeToGfs("/dir/file.txt", "changed");
+    assertNotNull(Gfs.commit(gfs).execute().getCommit());
+  }
+
+}
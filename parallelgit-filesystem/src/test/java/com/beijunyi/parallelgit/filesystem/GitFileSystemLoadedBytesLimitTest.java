@@ -0,0 +1,97 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.junit.Assert.*;
+
+public class GitFileSystemLoadedBytesLimitTest extends AbstractGitFileSystemTest {
+
+  private static final int LIMIT = 512;
+  private static final int FILE_SIZE = 100;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    for(int i = 0; i < 8; i++)
+      writeToCache("/file" + i + ".txt", contentOf(i));
+    writeToCache("/dir/file.txt", contentOf(8));
+    commitToMaster();
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).loadedBytesLimit(LIMIT)));
+  }
+
+  @Test
+  public void readFilesBeyondLimit_theLoadedBytesShouldStayWithinTheLimit() throws IOException {
+    for(int i = 0; i < 8; i++)
+      Files.readAllBytes(gfs.getPath("/file" + i + ".txt"));
+    assertTrue(objService.getLoadedBytes() <= LIMIT);
+  }
+
+  @Test
+  public void readEvictedFile_shouldReturnTheFileData() throws IOException {
+    for(int i = 0; i < 8; i++)
+      Files.readAllBytes(gfs.getPath("/file" + i + ".txt"));
+    for(int i = 0; i < 8; i++)
+      assertArrayEquals(contentOf(i), Files.readAllBytes(gfs.getPath("/file" + i + ".txt")));
+  }
+
+  @Test
+  public void readFilesBeyondLimit_theModifiedFilesShouldNotBeEvicted() throws IOException {
+    byte[] data = contentOf(100);
+    Files.write(gfs.getPath("/file0.txt"), data);
+    for(int i = 1; i < 8; i++)
+      Files.readAllBytes(gfs.getPath("/file" + i + ".txt"));
+    assertArrayEquals(data, Files.readAllBytes(gfs.getPath("/file0.txt")));
+    assertTrue(gfs.getStatusProvider().isDirty());
+  }
+
+  @Test
+  public void readFilesBeyondLimit_theFileSystemShouldNotBecomeDirty() throws IOException {
+    for(int i = 0; i < 8; i++)
+      Files.readAllBytes(gfs.getPath("/file" + i + ".txt"));
+    assertFalse(gfs.getStatusProvider().isDirty());
+  }
+
+  @Test
+  public void readFilesBeyondLimit_theDirectoryThatCannotBeEvictedShouldStayAccounted() throws IOException {
+    assertTrue(Files.exists(gfs.getPath("/dir/file.txt")));
+    long directories = objService.getLoadedBytes();
+    for(int i = 0; i < 8; i++)
+      Files.readAllBytes(gfs.getPath("/file" + i + ".txt"));
+    long files = objService.getLoadedBytes() - directories;
+    assertTrue(files >= FILE_SIZE);
+    assertEquals(0, files % FILE_SIZE);
+  }
+
+  @Test
+  public void readFile_theLoadedBytesShouldBeReportedByTheFileStore() throws IOException {
+    assertTrue(Files.exists(gfs.getPath("/file0.txt")));
+    long before = gfs.getFileStore().getLoadedBytes();
+    Files.readAllBytes(gfs.getPath("/file0.txt"));
+    assertEquals(before + FILE_SIZE, gfs.getFileStore().getLoadedBytes());
+    assertEquals(LIMIT - gfs.getFileStore().getLoadedBytes(), gfs.getFileStore().getUsableSpace());
+  }
+
+  @Test
+  public void commitAfterEviction_theCommitShouldContainAllFiles() throws IOException {
+    for(int i = 0; i < 8; i++)
+      Files.readAllBytes(gfs.getPath("/file" + i + ".txt"));
+    writeToGfs("/new.txt", "new");
+    assertNotNull(Gfs.commit(gfs).execute().getCommit());
+    for(int i = 0; i < 8; i++)
+      assertArrayEquals(contentOf(i), Files.readAllBytes(gfs.getPath("/file" + i + ".txt")));
+  }
+
+  private static byte[] contentOf(int index) {
+    byte[] ret = new byte[FILE_SIZE];
+    for(int i = 0; i < ret.length; i++)
+      ret[i] = (byte) (index + i);
+    return ret;
+  }
+
+}
@@ -0,0 +1,48 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.junit.Assert.*;
+
+public class GitFileSystemPackInserterTest extends AbstractGitFileSystemTest {
+
+  @Before
+  public void setUp() throws IOException {
+    initFileRepository(true);
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).packInserter(true)));
+  }
+
+  @Test
+  public void commitWithPackInserter_newObjectsShouldBeWrittenIntoOnePack() throws IOException {
+    ObjectDirectory db = (ObjectDirectory) repo.getObjectDatabase();
+    int packs = db.getPacks().size();
+    for(int d = 0; d < 4; d++)
+      Files.createDirectory(gfs.getPath("/dir" + d));
+    for(int i = 0; i < 32; i++)
+      Files.write(gfs.getPath("/dir" + (i % 4) + "/file" + i + ".txt"), encode("file " + i));
+    RevCommit commit = Gfs.commit(gfs).execute().getCommit();
+    assertNotNull(commit);
+    assertEquals(packs + 1, db.getPacks().size());
+    assertFalse(db.fileFor(commit.getTree()).exists());
+  }
+
+  @Test
+  public void readFilesAfterCommitWithPackInserter_shouldReturnTheFileData() throws IOException {
+    for(int i = 0; i < 8; i++)
+      Files.write(gfs.getPath("/file" + i + ".txt"), encode("file " + i));
+    RevCommit commit = Gfs.commit(gfs).execute().getCommit();
+    try(GitFileSystem other = Gfs.newFileSystem(repo(repo).commit(commit))) {
+      for(int i = 0; i < 8; i++)
+        assertEquals("file " + i, readAsString(other.getPath("/file" + i + ".txt")));
+    }
+  }
+
+}
@@ -0,0 +1,82 @@
+package com.beijunyi.parallelgit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.beijunyi.parallelgit.utils.TreeUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.junit.Assert.*;
+
+public class GitFileSystemParallelFlushTest extends AbstractGitFileSystemTest {
+
+  private static final int DIRECTORIES = 16;
+  private static final int FILES = 8;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    writeToCache("/existing/file.txt");
+    commitToMaster();
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).flushParallelism(4)));
+  }
+
+  @Test
+  public void flushWithParallelism_theResultShouldEqualTheSequentialResult() throws IOException {
+    writeFiles(gfs);
+    ObjectId parallel = gfs.flush();
+    try(GitFileSystem sequential = Gfs.newFileSystem(repo(repo).branch(MASTER))) {
+      writeFiles(sequential);
+      assertEquals(sequential.flush(), parallel);
+    }
+  }
+
+  @Test
+  public void flushWithParallelism_theResultShouldContainAllFiles() throws IOException {
+    writeFiles(gfs);
+    ObjectId tree = gfs.flush();
+    for(int d = 0; d < DIRECTORIES; d++) {
+      for(int f = 0; f < FILES; f++) {
+        try(TreeWalk tw = TreeUtils.forPath(pathOf(d, f), tree, repo)) {
+          assertNotNull(tw);
+          assertArrayEquals(encode(pathOf(d, f)), repo.open(tw.getObjectId(0)).getBytes());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void commitWithParallelism_theCommitShouldContainTheChanges() throws IOException {
+    writeFiles(gfs);
+    assertNotNull(Gfs.commit(gfs).execute().getCommit());
+    assertFalse(gfs.getStatusProvider().isDirty());
+    assertEquals(pathOf(3, 5), readAsString(gfs.getPath(pathOf(3, 5))));
+  }
+
+  @Test
+  public void flushAfterComputingTheTreeId_theChildrenShouldStillBePersistedInParallel() throws IOException {
+    writeFiles(gfs);
+    ObjectId computed = gfs.getFileStore().getRoot().getObjectId(false);
+    assertEquals(computed, gfs.flush());
+    assertTrue(objService.getFlushPool().getPoolSize() > 0);
+    assertTrue(repo.getObjectDatabase().has(computed));
+  }
+
+  private static void writeFiles(GitFileSystem gfs) throws IOException {
+    for(int d = 0; d < DIRECTORIES; d++) {
+      Files.createDirectories(gfs.getPath("/dir" + d + "/sub"));
+      for(int f = 0; f < FILES; f++)
+        Files.write(gfs.getPath(pathOf(d, f)), encode(pathOf(d, f)));
+    }
+  }
+
+  private static String pathOf(int dir, int file) {
+    return "/dir" + dir + "/sub/file" + file + ".txt";
+  }
+
+}
@@ -10,7 +10,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static com.beijunyi.parallelgit.filesystem.Gfs.*;
+import static com.beijunyi.parallelgit.filesystem.commands.GfsApplyStash.Status.CHECKOUT_CONFLICT;
 import static java.nio.file.Files.readAllBytes;
+import static java.util.Collections.singletonList;
 import static org.eclipse.jgit.util.RawParseUtils.decode;
 import static org.junit.Assert.*;
 
@@ -67,6 +69,23 @@ public class GfsApplyStashTest extends AbstractGitFileSystemTest {
     assertTrue(result.getConflicts().containsKey("/test_file.txt"));
   }
 
+  @Test
+  public void applyStashWhenWorktreeHasChangesToStashedFile_theResultShouldContainTheFailingPath() throws IOException {
+    writeToGfs("/test_file.txt", someBytes());
+    createStash(gfs).execute();
+    reset(gfs).execute();
+
+    byte[] local = someBytes();
+    writeToGfs("/test_file.txt", local);
+
+    Result result = applyStash(gfs).execute();
+
+    assertEquals(CHECKOUT_CONFLICT, result.getStatus());
+    assertFalse(result.hasConflicts());
+    assertEquals(singletonList("/test_file.txt"), result.getFailingPaths());
+    assertArrayEquals(local, readAllBytes(gfs.getPath("/test_file.txt")));
+  }
+
   @Test
   public void applyStashWithConflicts_theConflictingFileShouldBeFormatted() throws IOException {
     writeToGfs("/test_file.txt", "version A");
@@ -0,0 +1,91 @@
+package com.beijunyi.parallelgit.filesystem.commands;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
+import com.beijunyi.parallelgit.filesystem.Gfs;
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.eclipse.jgit.lib.Constants.encode;
+import static org.junit.Assert.*;
+
+public class GfsCheckoutParallelTest extends AbstractGitFileSystemTest {
+
+  private static final int DIRECTORIES = 8;
+  private static final int FILES = 4;
+
+  private RevCommit target;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    for(int d = 0; d < DIRECTORIES; d++)
+      for(int f = 0; f < FILES; f++)
+        writeToCache(pathOf(d, f), "master " + d + "_" + f);
+    writeToCache("/root.txt", "master");
+    commitToMaster();
+    clearCache();
+    for(int d = 0; d < DIRECTORIES; d++) {
+      for(int f = 0; f < FILES; f++) {
+        if(d % 2 == 0)
+          writeToCache(pathOf(d, f), "master " + d + "_" + f);
+        else
+          writeToCache("/dir" + d + "/sub/file" + f + ".txt", "target " + d + "_" + f);
+      }
+    }
+    writeToCache("/target.txt", "target");
+    target = commitToBranch("target", null);
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).flushParallelism(4)));
+  }
+
+  @Test
+  public void checkoutWithParallelism_theTreeShouldEqualTheTargetTree() throws IOException {
+    GfsCheckout.Result result = Gfs.checkout(gfs).target("target").execute();
+    assertTrue(result.isSuccessful());
+    assertEquals(target.getTree(), gfs.flush());
+  }
+
+  @Test
+  public void checkoutWithParallelism_theResultShouldEqualTheSequentialResult() throws IOException {
+    writeToGfs(pathOf(0, 0), "local");
+    Gfs.checkout(gfs).target("target").execute();
+    try(GitFileSystem sequential = Gfs.newFileSystem(repo(repo).branch(MASTER))) {
+      Files.write(sequential.getPath(pathOf(0, 0)), encode("local"));
+      Gfs.checkout(sequential).target("target").execute();
+      assertEquals(sequential.flush(), gfs.flush());
+    }
+  }
+
+  @Test
+  public void checkoutWithParallelism_localChangesShouldBeKept() throws IOException {
+    writeToGfs(pathOf(2, 1), "local");
+    GfsCheckout.Result result = Gfs.checkout(gfs).target("target").execute();
+    assertTrue(result.isSuccessful());
+    assertEquals("local", readAsString(gfs.getPath(pathOf(2, 1))));
+    assertEquals("target", readAsString(gfs.getPath("/target.txt")));
+  }
+
+  @Test
+  public void checkoutWithConflictsInMultipleSubtrees_allConflictsShouldBeReported() throws IOException {
+    writeToGfs(pathOf(1, 0), "local");
+    writeToGfs(pathOf(3, 2), "local");
+    writeToGfs("/root.txt", "local");
+    GfsCheckout.Result result = Gfs.checkout(gfs).target("target").execute();
+    assertFalse(result.isSuccessful());
+    assertEquals(3, result.getConflicts().size());
+    assertTrue(result.getConflicts().containsKey(pathOf(1, 0)));
+    assertTrue(result.getConflicts().containsKey(pathOf(3, 2)));
+    assertTrue(result.getConflicts().containsKey("/root.txt"));
+  }
+
+  private static String pathOf(int dir, int file) {
+    return "/dir" + dir + "/file" + file + ".txt";
+  }
+
+}
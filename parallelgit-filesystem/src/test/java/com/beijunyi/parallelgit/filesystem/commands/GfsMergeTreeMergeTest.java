@@ -0,0 +1,240 @@
+package com.beijunyi.parallelgit.filesystem.commands;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nonnull;
+
+import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
+import com.beijunyi.parallelgit.filesystem.ParallelGitMergeTest;
+import com.beijunyi.parallelgit.filesystem.merge.MergeConflict;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.merge.MergeFormatter;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.Merger;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.Gfs.*;
+import static com.beijunyi.parallelgit.filesystem.commands.GfsMerge.Result;
+import static com.beijunyi.parallelgit.filesystem.commands.GfsMerge.Status.*;
+import static com.beijunyi.parallelgit.utils.BranchUtils.getHeadCommit;
+import static com.beijunyi.parallelgit.utils.io.GitFileEntry.newEntry;
+import static java.util.Collections.singletonList;
+import static org.eclipse.jgit.lib.Constants.encode;
+import static org.eclipse.jgit.util.RawParseUtils.decode;
+import static org.junit.Assert.*;
+
+public class GfsMergeTreeMergeTest extends AbstractGitFileSystemTest implements ParallelGitMergeTest {
+
+  private static final int MANY_DIRS = 4;
+  private static final int MANY_FILES = 16;
+
+  private AnyObjectId base;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    writeBaseToCache();
+    base = commit();
+  }
+
+  @Test
+  public void mergeChangesInDifferentDirectories_theResultTreeShouldEqualTheResolveMergerResult() throws IOException {
+    writeToCache("/dir1/file1.txt", "a\nB\nc\nd\ne");
+    writeToCache("/dir2/file3.txt", "ours 3");
+    commitToBranch(OURS, base);
+    writeBaseToCache();
+    writeToCache("/dir1/file1.txt", "a\nb\nc\nD\nd\ne");
+    writeToCache("/file5.txt", "theirs 5");
+    writeToCache("/dir4/file6.txt", "theirs 6");
+    commitToBranch(THEIRS, base);
+    gfs = newFileSystem(OURS, repo);
+
+    Result result = merge(gfs).source(THEIRS).execute();
+    assertEquals(MERGED, result.getStatus());
+    assertNotNull(result.getCommit());
+    assertEquals(resolveMergerResult(), result.getCommit().getTree());
+    assertEquals("a\nB\nc\nD\nd\ne", readAsString(gfs.getPath("/dir1/file1.txt")));
+    assertEquals("theirs 6", readAsString(gfs.getPath("/dir4/file6.txt")));
+    assertEquals("theirs 5", readAsString(gfs.getPath("/file5.txt")));
+  }
+
+  @Test
+  public void mergeWhenWorktreeHasUnrelatedChanges_theChangesShouldBeKeptButNotCommitted() throws IOException {
+    writeToCache("/dir1/file2.txt", "ours 2");
+    commitToBranch(OURS, base);
+    writeBaseToCache();
+    writeToCache("/dir2/file3.txt", "theirs 3");
+    commitToBranch(THEIRS, base);
+    gfs = newFileSystem(OURS, repo);
+    writeToGfs("/dir3/sub/file4.txt", "local 4");
+
+    Result result = merge(gfs).source(THEIRS).execute();
+    assertEquals(MERGED, result.getStatus());
+    assertNotNull(result.getCommit());
+    assertEquals("local 4", readAsString(gfs.getPath("/dir3/sub/file4.txt")));
+    assertEquals("theirs 3", readAsString(gfs.getPath("/dir2/file3.txt")));
+    assertEquals(calculateBlobId(encode("base 4")), newEntry("/dir3/sub/file4.txt", result.getCommit().getTree(), repo).getId());
+  }
+
+  @Test
+  public void mergeWhenWorktreeHasChangesToMergedFile_theStatusShouldBeCheckoutConflict() throws IOException {
+    writeToCache("/dir1/file2.txt", "ours 2");
+    commitToBranch(OURS, base);
+    writeBaseToCache();
+    writeToCache("/dir2/file3.txt", "theirs 3");
+    commitToBranch(THEIRS, base);
+    gfs = newFileSystem(OURS, repo);
+    writeToGfs("/dir2/file3.txt", "local 3");
+
+    Result result = merge(gfs).source(THEIRS).execute();
+    assertEquals(CHECKOUT_CONFLICT, result.getStatus());
+    assertEquals(singletonList("/dir2/file3.txt"), result.getFailingPaths());
+    assertEquals("local 3", readAsString(gfs.getPath("/dir2/file3.txt")));
+    assertEquals("ours 2", readAsString(gfs.getPath("/dir1/file2.txt")));
+  }
+
+  @Test
+  public void mergeWhenWorktreeHasUnrelatedChangesInMergedDirectory_theMergeShouldSucceed() throws IOException {
+    writeToCache("/dir2/file3.txt", "ours 3");
+    commitToBranch(OURS, base);
+    writeBaseToCache();
+    writeToCache("/dir1/file2.txt", "theirs 2");
+    commitToBranch(THEIRS, base);
+    gfs = newFileSystem(OURS, repo);
+    writeToGfs("/dir1/file1.txt", "local 1");
+
+    Result result = merge(gfs).source(THEIRS).execute();
+    assertEquals(MERGED, result.getStatus());
+    assertEquals("local 1", readAsString(gfs.getPath("/dir1/file1.txt")));
+    assertEquals("theirs 2", readAsString(gfs.getPath("/dir1/file2.txt")));
+  }
+
+  @Test
+  public void mergeWhenFileIsDeletedByOursAndModifiedByTheirs_theConflictShouldBeCheckedOut() throws IOException {
+    clearCache();
+    writeToCache("/dir1/file1.txt", "a\nb\nc\nd\ne");
+    writeToCache("/dir2/file3.txt", "base 3");
+    writeToCache("/dir3/sub/file4.txt", "base 4");
+    writeToCache("/file5.txt", "base 5");
+    commitToBranch(OURS, base);
+    writeBaseToCache();
+    writeToCache("/dir1/file2.txt", "theirs 2");
+    commitToBranch(THEIRS, base);
+    gfs = newFileSystem(OURS, repo);
+
+    Result result = merge(gfs).source(THEIRS).execute();
+    assertEquals(CONFLICTING, result.getStatus());
+    MergeConflict conflict = result.getConflicts().get("/dir1/file2.txt");
+    assertNotNull(conflict);
+    String formatted = decode(conflict.format(new MergeFormatter()));
+    assertTrue(formatted.contains("theirs 2"));
+    assertEquals(formatted, readAsString(gfs.getPath("/dir1/file2.txt")));
+  }
+
+  @Test
+  public void mergeWhenFileIsModifiedByOursAndDeletedByTheirs_theFileShouldBeConflictingAndKeepOurVersion() throws IOException {
+    writeToCache("/dir1/file2.txt", "ours 2");
+    commitToBranch(OURS, base);
+    clearCache();
+    writeToCache("/dir1/file1.txt", "a\nb\nc\nd\ne");
+    writeToCache("/dir2/file3.txt", "base 3");
+    writeToCache("/dir3/sub/file4.txt", "base 4");
+    writeToCache("/file5.txt", "base 5");
+    commitToBranch(THEIRS, base);
+    gfs = newFileSystem(OURS, repo);
+
+    Result result = merge(gfs).source(THEIRS).execute();
+    assertEquals(CONFLICTING, result.getStatus());
+    MergeConflict conflict = result.getConflicts().get("/dir1/file2.txt");
+    assertNotNull(conflict);
+    String formatted = decode(conflict.format(new MergeFormatter()));
+    assertTrue(formatted.contains("ours 2"));
+    assertEquals(formatted, readAsString(gfs.getPath("/dir1/file2.txt")));
+  }
+
+  @Test
+  public void mergeWhenBothSidesAddTheSameDirectory_theDirectoriesShouldBeMerged() throws IOException {
+    writeToCache("/new_dir/ours.txt", "ours");
+    commitToBranch(OURS, base);
+    writeBaseToCache();
+    writeToCache("/new_dir/theirs.txt", "theirs");
+    commitToBranch(THEIRS, base);
+    gfs = newFileSystem(OURS, repo);
+
+    Result result = merge(gfs).source(THEIRS).execute();
+    assertEquals(MERGED, result.getStatus());
+    assertEquals("ours", readAsString(gfs.getPath("/new_dir/ours.txt")));
+    assertEquals("theirs", readAsString(gfs.getPath("/new_dir/theirs.txt")));
+  }
+
+  @Test
+  public void mergeManyFilesChangedOnBothSidesWithExecutor_theResultTreeShouldEqualTheResolveMergerResult() throws IOException {
+    writeManyFilesOnBothSides(false);
+    gfs = newFileSystem(OURS, repo);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Result result = merge(gfs).source(THEIRS).executor(executor).execute();
+      assertEquals(MERGED, result.getStatus());
+      assertNotNull(result.getCommit());
+      assertEquals(resolveMergerResult(), result.getCommit().getTree());
+      assertEquals("a\nours\nc\ntheirs\ne", readAsString(gfs.getPath("/many/dir3/file7.txt")));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void mergeManyConflictingFilesWithExecutor_allConflictsShouldBeReported() throws IOException {
+    writeManyFilesOnBothSides(true);
+    gfs = newFileSystem(OURS, repo);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Result result = merge(gfs).source(THEIRS).executor(executor).execute();
+      assertEquals(CONFLICTING, result.getStatus());
+      assertEquals(MANY_DIRS * MANY_FILES / 2, result.getConflicts().size());
+      assertTrue(result.getConflicts().containsKey("/many/dir0/file1.txt"));
+      assertFalse(result.getConflicts().containsKey("/many/dir0/file0.txt"));
+      assertEquals("a\nours\nc\ntheirs\ne", readAsString(gfs.getPath("/many/dir0/file0.txt")));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void writeManyFilesOnBothSides(boolean conflicting) throws IOException {
+    writeManyFiles("a\nb\nc\nd\ne", "a\nb\nc\nd\ne");
+    AnyObjectId manyBase = commitToBranch(OURS, base);
+    writeManyFiles("a\nours\nc\nd\ne", conflicting ? "a\nb\nc\nours\ne" : "a\nours\nc\nd\ne");
+    commitToBranch(OURS);
+    writeManyFiles("a\nb\nc\ntheirs\ne", "a\nb\nc\ntheirs\ne");
+    commitToBranch(THEIRS, manyBase);
+  }
+
+  private void writeManyFiles(String even, String odd) throws IOException {
+    writeBaseToCache();
+    for(int d = 0; d < MANY_DIRS; d++)
+      for(int f = 0; f < MANY_FILES; f++)
+        writeToCache("/many/dir" + d + "/file" + f + ".txt", f % 2 == 0 ? even : odd);
+  }
+
+  private void writeBaseToCache() throws IOException {
+    clearCache();
+    writeToCache("/dir1/file1.txt", "a\nb\nc\nd\ne");
+    writeToCache("/dir1/file2.txt", "base 2");
+    writeToCache("/dir2/file3.txt", "base 3");
+    writeToCache("/dir3/sub/file4.txt", "base 4");
+    writeToCache("/file5.txt", "base 5");
+  }
+
+  @Nonnull
+  private AnyObjectId resolveMergerResult() throws IOException {
+    RevCommit ours = getHeadCommit(OURS, repo);
+    RevCommit theirs = getHeadCommit(THEIRS, repo);
+    Merger merger = MergeStrategy.RESOLVE.newMerger(repo, true);
+    assertTrue(merger.merge(ours, theirs));
+    return merger.getResultTreeId();
+  }
+
+}
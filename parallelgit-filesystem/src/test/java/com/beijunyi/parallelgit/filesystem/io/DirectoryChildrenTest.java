@@ -0,0 +1,95 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
+import com.beijunyi.parallelgit.filesystem.Gfs;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirectoryChildrenTest extends AbstractGitFileSystemTest {
+
+  private DirectoryNode parent;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    initGitFileSystem();
+    parent = gfs.getFileStore().getRoot();
+  }
+
+  @Test
+  public void putFileAndDirectoryWithSamePrefix_theChildrenShouldBeInGitOrder() {
+    DirectoryChildren children = DirectoryChildren.empty()
+                                   .put("a", DirectoryNode.newDirectory(parent))
+                                   .put("a.txt", FileNode.newFile(false, parent))
+                                   .put("a0", FileNode.newFile(false, parent));
+    assertEquals(Arrays.asList("a.txt", "a", "a0"), children.names());
+  }
+
+  @Test
+  public void buildFromUnsortedEntries_theChildrenShouldBeInGitOrder() {
+    DirectoryChildren children = DirectoryChildren.builder(1)
+                                   .add("b.txt", FileNode.newFile(false, parent))
+                                   .add("a", DirectoryNode.newDirectory(parent))
+                                   .add("a.txt", FileNode.newFile(false, parent))
+                                   .build();
+    assertEquals(Arrays.asList("a.txt", "a", "b.txt"), children.names());
+  }
+
+  @Test
+  public void getChildByName_shouldReturnTheNodeRegardlessOfItsType() {
+    Node dir = DirectoryNode.newDirectory(parent);
+    Node file = FileNode.newFile(false, parent);
+    DirectoryChildren children = DirectoryChildren.empty().put("dir", dir).put("file.txt", file);
+    assertSame(dir, children.get("dir"));
+    assertSame(file, children.get("file.txt"));
+    assertNull(children.get("missing"));
+  }
+
+  @Test
+  public void replaceFileWithDirectory_theChildShouldBeRepositioned() {
+    DirectoryChildren children = DirectoryChildren.empty()
+                                   .put("a", FileNode.newFile(false, parent))
+                                   .put("a.txt", FileNode.newFile(false, parent));
+    assertEquals(Arrays.asList("a", "a.txt"), children.names());
+    Node dir = DirectoryNode.newDirectory(parent);
+    children = children.put("a", dir);
+    assertEquals(Arrays.asList("a.txt", "a"), children.names());
+    assertSame(dir, children.get("a"));
+  }
+
+  @Test
+  public void removeChild_theOtherChildrenShouldRemain() {
+    DirectoryChildren children = DirectoryChildren.empty()
+                                   .put("a", FileNode.newFile(false, parent))
+                                   .put("b", FileNode.newFile(false, parent))
+                                   .put("c", FileNode.newFile(false, parent))
+                                   .remove("b");
+    assertEquals(Arrays.asList("a", "c"), children.names());
+    assertFalse(children.contains("b"));
+  }
+
+  @Test
+  public void putIntoChildren_theOriginalChildrenShouldNotChange() {
+    DirectoryChildren children = DirectoryChildren.empty().put("a", FileNode.newFile(false, parent));
+    children.put("b", FileNode.newFile(false, parent));
+    assertEquals(1, children.size());
+  }
+
+  @Test
+  public void commitFileAndDirectoryWithSamePrefix_theTreeShouldMatchTheCanonicalTree() throws IOException {
+    writeToCache("/a.txt", "file");
+    writeToCache("/a/b.txt", "nested file");
+    ObjectId expected = commit().getTree();
+
+    writeToGfs("/a/b.txt", "nested file");
+    writeToGfs("/a.txt", "file");
+    assertEquals(expected, Gfs.commit(gfs).execute().getCommit().getTree());
+  }
+
+}
@@ -0,0 +1,117 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import javax.annotation.Nonnull;
+
+import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
+import com.beijunyi.parallelgit.filesystem.Gfs;
+import com.beijunyi.parallelgit.filesystem.GfsObjectCache;
+import com.beijunyi.parallelgit.filesystem.GitFileSystem;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.eclipse.jgit.lib.Constants.encode;
+import static org.junit.Assert.*;
+
+public class DirectoryNodeLazyLoadTest extends AbstractGitFileSystemTest {
+
+  private static final int FILES = 64;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    for(int i = 0; i < FILES; i++)
+      writeToCache("/dir/file" + i + ".txt", "content " + i);
+    commitToMaster();
+  }
+
+  @Test
+  public void readOneFile_onlyTheTouchedChildShouldBeLoaded() throws IOException {
+    injectGitFileSystem(Gfs.newFileSystem(MASTER, repo));
+    assertEquals("content 7", readAsString(gfs.getPath("/dir/file7.txt")));
+    DirectoryNode dir = (DirectoryNode) root().getChild("dir");
+    assertNotNull(dir);
+    assertEquals(FILES, dir.getData().size());
+    assertEquals(1, dir.getData().nodes().size());
+  }
+
+  @Test
+  public void readOneFileWithLazyDirectoriesDisabled_allChildrenShouldBeLoaded() throws IOException {
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).lazyDirectories(false)));
+    assertEquals("content 7", readAsString(gfs.getPath("/dir/file7.txt")));
+    DirectoryNode dir = (DirectoryNode) root().getChild("dir");
+    assertNotNull(dir);
+    assertEquals(FILES, dir.getData().nodes().size());
+  }
+
+  @Test
+  public void listLazyDirectory_shouldNotLoadTheChildren() throws IOException {
+    injectGitFileSystem(Gfs.newFileSystem(MASTER, repo));
+    DirectoryNode dir = (DirectoryNode) root().getChild("dir");
+    assertNotNull(dir);
+    assertEquals(FILES, dir.listChildren().size());
+    assertTrue(dir.getData().nodes().isEmpty());
+  }
+
+  @Test
+  public void loadChildTwice_shouldReturnTheSameNode() throws IOException {
+    injectGitFileSystem(Gfs.newFileSystem(MASTER, repo));
+    DirectoryNode dir = (DirectoryNode) root().getChild("dir");
+    assertNotNull(dir);
+    assertSame(dir.getChild("file1.txt"), dir.getChild("file1.txt"));
+  }
+
+  @Test
+  public void loadChild_theChildShouldKeepItsOrigin() throws IOException {
+    injectGitFileSystem(Gfs.newFileSystem(MASTER, repo));
+    DirectoryNode dir = (DirectoryNode) root().getChild("dir");
+    assertNotNull(dir);
+    Node file = dir.getChild("file1.txt");
+    assertNotNull(file);
+    assertFalse(file.isNew());
+    assertFalse(file.isModified());
+  }
+
+  @Test
+  public void modifyOneFileAndCommit_theTreeShouldMatchTheEagerResult() throws IOException {
+    injectGitFileSystem(Gfs.newFileSystem(MASTER, repo));
+    Files.write(gfs.getPath("/dir/file3.txt"), encode("changed"));
+    Files.delete(gfs.getPath("/dir/file5.txt"));
+    ObjectId lazy = gfs.flush();
+    try(GitFileSystem eager = Gfs.newFileSystem(repo(repo).branch(MASTER).lazyDirectories(false))) {
+      Files.write(eager.getPath("/dir/file3.txt"), encode("changed"));
+      Files.delete(eager.getPath("/dir/file5.txt"));
+      assertEquals(eager.flush(), lazy);
+    }
+  }
+
+  @Test
+  public void commit_theOriginsShouldBeUpdatedWithoutReadingTreeSnapshots() throws IOException {
+    GfsObjectCache cache = new GfsObjectCache();
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).objectCache(cache)));
+    assertEquals("content 7", readAsString(gfs.getPath("/dir/file7.txt")));
+    Files.write(gfs.getPath("/dir/file3.txt"), encode("changed"));
+    Gfs.commit(gfs).execute();
+    DirectoryNode dir = (DirectoryNode) root().getChild("dir");
+    assertNotNull(dir);
+    assertNull(cache.getTree(dir.getObjectId(false)));
+    assertNull(cache.getTree(root().getObjectId(false)));
+    for(String name : new String[] {"file3.txt", "file5.txt", "file7.txt"}) {
+      Node file = dir.getChild(name);
+      assertNotNull(file);
+      assertFalse(file.isNew());
+      assertFalse(file.isModified());
+    }
+    assertFalse(gfs.getStatusProvider().isDirty());
+  }
+
+  @Nonnull
+  private DirectoryNode root() {
+    return gfs.getFileStore().getRoot();
+  }
+
+}
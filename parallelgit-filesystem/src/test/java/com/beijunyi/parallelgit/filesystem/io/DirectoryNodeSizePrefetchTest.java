@@ -0,0 +1,83 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.junit.Assert.*;
+
+public class DirectoryNodeSizePrefetchTest extends AbstractGitFileSystemTest {
+
+  private static final int FILES = 32;
+
+  @Before
+  public void setUp() throws IOException {
+    initRepository();
+    for(int i = 0; i < FILES; i++)
+      writeToCache("/dir/file" + i + ".txt", contentOf(i));
+    writeToCache("/dir/sub/file.txt", "sub");
+    commitToMaster();
+    initGitFileSystemForBranch(MASTER);
+  }
+
+  @Test
+  public void getSizeOfOneFile_theSizesOfAllSiblingFilesShouldBeFilled() throws IOException {
+    Files.size(gfs.getPath("/dir/file0.txt"));
+    DirectoryNode dir = directory();
+    for(int i = 0; i < FILES; i++) {
+      FileNode file = (FileNode) dir.getChild("file" + i + ".txt");
+      assertNotNull(file);
+      assertNull(file.getUnsizedBlob());
+    }
+  }
+
+  @Test
+  public void getSizeOfOneFile_theSiblingNodesShouldNotBeCreated() throws IOException {
+    Files.size(gfs.getPath("/dir/file0.txt"));
+    assertEquals(1, directory().getData().nodes().size());
+  }
+
+  @Test
+  public void getSizeOfEachFile_shouldReturnTheCorrectSizes() throws IOException {
+    for(int i = 0; i < FILES; i++)
+      assertEquals(contentOf(i).length(), Files.size(gfs.getPath("/dir/file" + i + ".txt")));
+  }
+
+  @Test
+  public void getSizeAfterSiblingIsModified_shouldReturnTheCorrectSizes() throws IOException {
+    writeToGfs("/dir/file3.txt", "modified content");
+    for(int i = 0; i < FILES; i++) {
+      long expected = i == 3 ? "modified content".length() : contentOf(i).length();
+      assertEquals(expected, Files.size(gfs.getPath("/dir/file" + i + ".txt")));
+    }
+  }
+
+  @Test
+  public void readOneFile_theSiblingFilesShouldNotBeLoaded() throws IOException {
+    assertEquals(contentOf(7), readAsString(gfs.getPath("/dir/file7.txt")));
+    assertEquals(1, directory().getData().nodes().size());
+  }
+
+  @Test
+  public void getSizeOfOneFile_subdirectoriesShouldNotBeLoaded() throws IOException {
+    Files.size(gfs.getPath("/dir/file0.txt"));
+    for(Node node : directory().getData().nodes())
+      assertTrue(node instanceof FileNode);
+  }
+
+  private DirectoryNode directory() throws IOException {
+    return (DirectoryNode) gfs.getFileStore().getRoot().getChild("dir");
+  }
+
+  private static String contentOf(int index) {
+    StringBuilder ret = new StringBuilder();
+    for(int i = 0; i <= index; i++)
+      ret.append("content ").append(i);
+    return ret.toString();
+  }
+
+}
@@ -0,0 +1,109 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+
+import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
+import com.beijunyi.parallelgit.filesystem.Gfs;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
+import static java.nio.file.StandardOpenOption.*;
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.junit.Assert.*;
+
+public class GfsBlobStreamChannelTest extends AbstractGitFileSystemTest {
+
+  private static final byte[] FILE_DATA = encodeASCII("18 bytes test data");
+
+  @Before
+  public void setupFileSystem() throws IOException {
+    initRepository();
+    writeToCache("/large.txt", FILE_DATA);
+    writeToCache("/small.txt", encodeASCII("small"));
+    commitToMaster();
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).largeFileThreshold(8)));
+  }
+
+  @Test
+  public void openLargeFileForRead_shouldReturnStreamChannel() throws IOException {
+    try(SeekableByteChannel channel = Files.newByteChannel(gfs.getPath("/large.txt"), READ)) {
+      assertTrue(channel instanceof GfsBlobStreamChannel);
+    }
+  }
+
+  @Test
+  public void openSmallFileForRead_shouldReturnSeekableByteChannel() throws IOException {
+    try(SeekableByteChannel channel = Files.newByteChannel(gfs.getPath("/small.txt"), READ)) {
+      assertTrue(channel instanceof GfsSeekableByteChannel);
+    }
+  }
+
+  @Test
+  public void openLargeFileForWrite_shouldReturnSeekableByteChannel() throws IOException {
+    try(SeekableByteChannel channel = Files.newByteChannel(gfs.getPath("/large.txt"), WRITE)) {
+      assertTrue(channel instanceof GfsSeekableByteChannel);
+    }
+  }
+
+  @Test
+  public void sizeOfStreamChannel_shouldReturnTheBlobSize() throws IOException {
+    try(SeekableByteChannel channel = Files.newByteChannel(gfs.getPath("/large.txt"), READ)) {
+      assertEquals(FILE_DATA.length, channel.size());
+    }
+  }
+
+  @Test
+  public void readAllBytesOfLargeFile_shouldReturnTheFileDataWithoutLoadingTheNode() throws IOException {
+    assertArrayEquals(FILE_DATA, Files.readAllBytes(gfs.getPath("/large.txt")));
+    assertFalse(GfsIO.findFile(gfs.getPath("/large.txt")).isInitialized());
+  }
+
+  @Test
+  public void readAfterSeekingBackwards_shouldReturnTheDataAtTheNewPosition() throws IOException {
+    try(SeekableByteChannel channel = Files.newByteChannel(gfs.getPath("/large.txt"), READ)) {
+      channel.read(ByteBuffer.allocate(12));
+      channel.position(3);
+      ByteBuffer buffer = ByteBuffer.allocate(5);
+      channel.read(buffer);
+      assertEquals("bytes", new String(buffer.array(), "US-ASCII"));
+      assertEquals(8, channel.position());
+    }
+  }
+
+  @Test
+  public void readAfterSeekingForwards_shouldReturnTheDataAtTheNewPosition() throws IOException {
+    try(SeekableByteChannel channel = Files.newByteChannel(gfs.getPath("/large.txt"), READ)) {
+      channel.position(14);
+      ByteBuffer buffer = ByteBuffer.allocate(4);
+      channel.read(buffer);
+      assertEquals("data", new String(buffer.array(), "US-ASCII"));
+    }
+  }
+
+  @Test
+  public void readAtEndOfBlob_shouldReturnMinusOne() throws IOException {
+    try(SeekableByteChannel channel = Files.newByteChannel(gfs.getPath("/large.txt"), READ)) {
+      channel.position(FILE_DATA.length);
+      assertEquals(-1, channel.read(ByteBuffer.allocate(4)));
+    }
+  }
+
+  @Test(expected = NonWritableChannelException.class)
+  public void writeToStreamChannel_shouldThrowNonWritableChannelException() throws IOException {
+    try(SeekableByteChannel channel = Files.newByteChannel(gfs.getPath("/large.txt"), READ)) {
+      channel.write(ByteBuffer.wrap(someBytes()));
+    }
+  }
+
+  @Test
+  public void readLargeFileAfterItIsModified_shouldReturnTheNewData() throws IOException {
+    Files.write(gfs.getPath("/large.txt"), encodeASCII("new data that is long"));
+    assertEquals("new data that is long", new String(Files.readAllBytes(gfs.getPath("/large.txt")), "US-ASCII"));
+  }
+
+}
@@ -5,6 +5,7 @@ import java.nio.file.Files;
 import javax.annotation.Nonnull;
 
 import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
+import com.beijunyi.parallelgit.filesystem.Gfs;
 import com.beijunyi.parallelgit.utils.BlobUtils;
 import com.beijunyi.parallelgit.utils.TreeUtils;
 import com.beijunyi.parallelgit.utils.io.GitFileEntry;
@@ -13,7 +14,9 @@ import org.eclipse.jgit.lib.TreeFormatter;
 import org.junit.Before;
 import org.junit.Test;
 
+import static com.beijunyi.parallelgit.filesystem.utils.GfsConfiguration.repo;
 import static com.beijunyi.parallelgit.utils.io.GitFileEntry.*;
+import static org.eclipse.jgit.lib.Constants.MASTER;
 import static org.eclipse.jgit.lib.FileMode.REGULAR_FILE;
 import static org.junit.Assert.*;
 
@@ -122,6 +125,46 @@ public class GfsChangesCollectorTest extends AbstractGitFileSystemTest {
     assertArrayEquals(expected, Files.readAllBytes(gfs.getPath("/test_file.txt")));
   }
 
+  @Test(expected = IllegalStateException.class)
+  public void collectTwoChangesForTheSamePath_shouldThrowIllegalStateException() throws IOException {
+    initGitFileSystem();
+    changes.addChange("/dir/test_file.txt", someFileEntry());
+    changes.addChange("/dir/test_file.txt", deletion());
+  }
+
+  @Test
+  public void mergeChangesFromAnotherCollector_allChangesShouldBeAppliedByTheOperation() throws IOException {
+    initGitFileSystem("/dir1/some_file.txt");
+    GfsChangesCollector other = new GfsChangesCollector();
+    changes.addChange("/dir1/test_file1.txt", someFileEntry());
+    other.addChange("/dir1/test_file2.txt", someFileEntry());
+    other.addChange("/dir2/test_file3.txt", someFileEntry());
+    changes.addAll(other);
+    changes.applyTo(gfs);
+    assertTrue(Files.isRegularFile(gfs.getPath("/dir1/some_file.txt")));
+    assertTrue(Files.isRegularFile(gfs.getPath("/dir1/test_file1.txt")));
+    assertTrue(Files.isRegularFile(gfs.getPath("/dir1/test_file2.txt")));
+    assertTrue(Files.isRegularFile(gfs.getPath("/dir2/test_file3.txt")));
+  }
+
+  @Test
+  public void collectAndApplyManyChangesInSiblingDirectoriesWithParallelism_allChangesShouldBeApplied() throws IOException {
+    initRepository();
+    writeToCache("/dir0/some_file.txt");
+    commitToMaster();
+    injectGitFileSystem(Gfs.newFileSystem(repo(repo).branch(MASTER).flushParallelism(4)));
+    GitFileEntry entry = someFileEntry();
+    for(int d = 0; d < 4; d++)
+      for(int f = 0; f < 100; f++)
+        changes.addChange("/dir" + d + "/sub" + f % 4 + "/file" + f + ".txt", entry);
+    changes.addChange("/dir0/some_file.txt", deletion());
+    changes.applyTo(gfs);
+    assertFalse(Files.exists(gfs.getPath("/dir0/some_file.txt")));
+    for(int d = 0; d < 4; d++)
+      for(int f = 0; f < 100; f++)
+        assertTrue(Files.isRegularFile(gfs.getPath("/dir" + d + "/sub" + f % 4 + "/file" + f + ".txt")));
+  }
+
   @Nonnull
   private GitFileEntry newFileEntry(byte[] bytes) throws IOException {
     ObjectId blobId = BlobUtils.insertBlob(bytes, repo);
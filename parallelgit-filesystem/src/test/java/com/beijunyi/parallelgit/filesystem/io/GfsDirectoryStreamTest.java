@@ -2,10 +2,12 @@ package com.beijunyi.parallelgit.filesystem.io;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
+import com.beijunyi.parallelgit.filesystem.GitPath;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -68,4 +70,86 @@ public class GfsDirectoryStreamTest extends AbstractGitFileSystemTest {
     ds.close();
     ds.iterator().next();
   }
+
+  @Test
+  public void iterateDirectoryStreamOfLoadedChildren_thePathsShouldCarryTheirNodes() throws IOException {
+    initRepository();
+    writeToCache("/dir/file.txt");
+    writeToCache("/dir/sub/file.txt");
+    commitToMaster();
+    initGitFileSystem();
+    assertTrue(Files.exists(gfs.getPath("/dir/file.txt")));
+    assertTrue(Files.exists(gfs.getPath("/dir/sub")));
+    try(DirectoryStream<Path> ds = Files.newDirectoryStream(gfs.getPath("/dir"))) {
+      for(Path child : ds) {
+        Node node = ((GitPath) child).getNode();
+        assertNotNull(node);
+        assertSame(gfs.getFileStore().getRoot().findNode(((GitPath) child).getBytes()), node);
+      }
+    }
+  }
+
+  @Test
+  public void iterateDirectoryStreamOfUnloadedChildren_shouldNotCreateChildNodes() throws IOException {
+    initRepository();
+    writeToCache("/dir/file.txt");
+    writeToCache("/dir/sub/file.txt");
+    commitToMaster();
+    initGitFileSystem();
+    try(DirectoryStream<Path> ds = Files.newDirectoryStream(gfs.getPath("/dir"))) {
+      for(Path child : ds)
+        assertNull(((GitPath) child).getNode());
+    }
+    DirectoryNode dir = (DirectoryNode) gfs.getFileStore().getRoot().findNode(gfs.getPath("/dir").getBytes());
+    assertNotNull(dir);
+    assertFalse(dir.getData().hasLoadedNodes());
+    assertTrue(Files.isRegularFile(gfs.getPath("/dir/file.txt")));
+  }
+
+  @Test(expected = DirectoryIteratorException.class)
+  public void iterateDirectoryStreamWhenFilterFails_shouldThrowDirectoryIteratorException() throws IOException {
+    initRepository();
+    writeToCache("/dir/file.txt");
+    commitToMaster();
+    initGitFileSystem();
+    DirectoryStream.Filter<Path> filter = new DirectoryStream.Filter<Path>() {
+      @Override
+      public boolean accept(Path entry) throws IOException {
+        throw new IOException();
+      }
+    };
+    try(DirectoryStream<Path> ds = Files.newDirectoryStream(gfs.getPath("/dir"), filter)) {
+      ds.iterator().hasNext();
+    }
+  }
+
+  @Test(expected = NoSuchFileException.class)
+  public void readAttributesAfterTheEntryIsDeleted_shouldThrowNoSuchFileException() throws IOException {
+    initRepository();
+    writeToCache("/dir/file.txt");
+    commitToMaster();
+    initGitFileSystem();
+    Path child;
+    try(DirectoryStream<Path> ds = Files.newDirectoryStream(gfs.getPath("/dir"))) {
+      child = ds.iterator().next();
+    }
+    Files.delete(child);
+    Files.readAttributes(child, BasicFileAttributes.class);
+  }
+
+  @Test
+  public void readAttributesAfterTheEntryIsReplaced_shouldReturnTheAttributesOfTheNewEntry() throws IOException {
+    initRepository();
+    writeToCache("/dir/file.txt", "old");
+    commitToMaster();
+    initGitFileSystem();
+    Path child;
+    try(DirectoryStream<Path> ds = Files.newDirectoryStream(gfs.getPath("/dir"))) {
+      child = ds.iterator().next();
+    }
+    Files.delete(child);
+    Files.createDirectory(child);
+    assertTrue(Files.readAttributes(child, BasicFileAttributes.class).isDirectory());
+  }
+
 }
@@ -5,6 +5,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.NonReadableChannelException;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
+import java.util.Random;
 
 import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
 import org.junit.Before;
@@ -109,4 +110,60 @@ public class GfsSeekableByteChannelTest extends AbstractGitFileSystemTest {
     }
   }
 
+  @Test
+  public void writeManySmallChunks_theChannelShouldContainAllChunksInOrder() throws IOException {
+    byte[] expected = new byte[3 * ChunkedByteBuffer.CHUNK_SIZE + 100];
+    new Random(0).nextBytes(expected);
+    try(GfsSeekableByteChannel channel = new GfsSeekableByteChannel(file, asList(WRITE, TRUNCATE_EXISTING))) {
+      for(int offset = 0; offset < expected.length; offset += 4096)
+        channel.write(ByteBuffer.wrap(expected, offset, Math.min(4096, expected.length - offset)));
+      assertEquals(expected.length, channel.size());
+      assertArrayEquals(expected, channel.getBytes());
+    }
+    assertArrayEquals(expected, file.getData());
+  }
+
+  @Test
+  public void readAcrossChunks_shouldReturnTheWrittenData() throws IOException {
+    byte[] expected = new byte[2 * ChunkedByteBuffer.CHUNK_SIZE];
+    new Random(0).nextBytes(expected);
+    try(GfsSeekableByteChannel channel = new GfsSeekableByteChannel(file, asList(READ, WRITE, APPEND))) {
+      channel.write(ByteBuffer.wrap(expected));
+      channel.position(FILE_DATA.length);
+      ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+      while(buffer.hasRemaining())
+        channel.read(buffer);
+      assertArrayEquals(expected, buffer.array());
+      assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+    }
+  }
+
+  @Test
+  public void writeBeyondTheEndOfTheFile_theGapShouldBeFilledWithZeros() throws IOException {
+    try(GfsSeekableByteChannel channel = new GfsSeekableByteChannel(file, singleton(WRITE))) {
+      channel.truncate(2);
+      channel.position(4);
+      channel.write(ByteBuffer.wrap(encodeASCII("!")));
+      assertArrayEquals(new byte[] {'1', '8', 0, 0, '!'}, channel.getBytes());
+    }
+  }
+
+  @Test
+  public void writeToChannel_theOriginalDataShouldNotBeModified() throws IOException {
+    byte[] original = file.getData();
+    try(GfsSeekableByteChannel channel = new GfsSeekableByteChannel(file, singleton(WRITE))) {
+      channel.write(ByteBuffer.wrap(encodeASCII("XX")));
+    }
+    assertArrayEquals(FILE_DATA, original);
+  }
+
+  @Test
+  public void closeChannelAfterSingleWrite_theNodeShouldReceiveTheWrittenArray() throws IOException {
+    try(GfsSeekableByteChannel channel = new GfsSeekableByteChannel(file, asList(WRITE, TRUNCATE_EXISTING))) {
+      channel.write(ByteBuffer.wrap(encodeASCII("new data")));
+      assertSame(channel.getBytes(), channel.getBytes());
+    }
+    assertArrayEquals(encodeASCII("new data"), file.getData());
+  }
+
 }
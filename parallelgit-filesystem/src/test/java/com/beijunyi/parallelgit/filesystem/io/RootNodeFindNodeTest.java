@@ -0,0 +1,77 @@
+package com.beijunyi.parallelgit.filesystem.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.beijunyi.parallelgit.filesystem.AbstractGitFileSystemTest;
+import com.beijunyi.parallelgit.filesystem.GitPath;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RootNodeFindNodeTest extends AbstractGitFileSystemTest {
+
+  private RootNode root;
+
+  @Before
+  public void setUp() throws IOException {
+    initGitFileSystem("/dir/sub/file.txt", "/dir/other.txt");
+    root = gfs.getFileStore().getRoot();
+  }
+
+  @Test
+  public void findRoot_shouldReturnTheRootNode() throws IOException {
+    assertSame(root, root.findNode(gfs.getPath("/").getBytes()));
+  }
+
+  @Test
+  public void findNestedFile_shouldReturnTheSameNodeAsWalkingTheTree() throws IOException {
+    Node expected = ((DirectoryNode) ((DirectoryNode) root.getChild("dir")).getChild("sub")).getChild("file.txt");
+    assertNotNull(expected);
+    assertSame(expected, findNode("/dir/sub/file.txt"));
+    assertSame(expected, findNode("/dir/sub/file.txt"));
+  }
+
+  @Test
+  public void findMissingFile_shouldReturnNull() throws IOException {
+    assertNull(findNode("/dir/sub/missing.txt"));
+    assertNull(findNode("/missing/file.txt"));
+  }
+
+  @Test
+  public void findChildOfFile_shouldReturnNull() throws IOException {
+    assertNull(findNode("/dir/other.txt/file.txt"));
+  }
+
+  @Test
+  public void findFileAfterItsParentIsDeleted_shouldReturnNull() throws IOException {
+    assertNotNull(findNode("/dir/sub/file.txt"));
+    Files.delete(gfs.getPath("/dir/sub/file.txt"));
+    Files.delete(gfs.getPath("/dir/sub"));
+    assertNull(findNode("/dir/sub/file.txt"));
+  }
+
+  @Test
+  public void findFileAfterItsParentIsRecreated_shouldReturnTheNewFile() throws IOException {
+    assertNotNull(findNode("/dir/sub/file.txt"));
+    Files.delete(gfs.getPath("/dir/sub/file.txt"));
+    Files.delete(gfs.getPath("/dir/sub"));
+    Files.createDirectory(gfs.getPath("/dir/sub"));
+    writeToGfs("/dir/sub/file.txt", "new content");
+    assertEquals("new content", readAsString(gfs.getPath("/dir/sub/file.txt")));
+  }
+
+  @Test
+  public void findFileWithNonAsciiName_shouldMatchTheCommittedEntry() throws IOException {
+    writeToGfs("/dir/été.txt", "summer");
+    GitPath path = gfs.getPath("/dir/été.txt");
+    assertEquals("summer", readAsString(path));
+    assertEquals("/dir/été.txt", path.toString());
+  }
+
+  private Node findNode(String path) throws IOException {
+    return root.findNode(gfs.getPath(path).getBytes());
+  }
+
+}
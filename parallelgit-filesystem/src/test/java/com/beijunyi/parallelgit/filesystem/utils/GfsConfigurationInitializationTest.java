@@ -16,4 +16,30 @@ public class GfsConfigurationInitializationTest extends AbstractParallelGitTest
     assertEquals(repo, cfg.repository());
   }
 
+  @Test
+  public void initWithReaderPoolSize() throws IOException {
+    initRepository();
+    GfsConfiguration cfg = GfsConfiguration.repo(repo).readerPoolSize(3);
+    assertEquals(3, cfg.readerPoolSize());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void initWithNonPositiveReaderPoolSize_shouldThrowIllegalArgumentException() throws IOException {
+    initRepository();
+    GfsConfiguration.repo(repo).readerPoolSize(0);
+  }
+
+  @Test
+  public void initWithLargeFileThreshold() throws IOException {
+    initRepository();
+    GfsConfiguration cfg = GfsConfiguration.repo(repo).largeFileThreshold(1024);
+    assertEquals(1024, cfg.largeFileThreshold());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void initWithNegativeLargeFileThreshold_shouldThrowIllegalArgumentException() throws IOException {
+    initRepository();
+    GfsConfiguration.repo(repo).largeFileThreshold(-1);
+  }
+
 }
@@ -1,6 +1,7 @@
 package usecases;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nonnull;
@@ -83,6 +84,34 @@ public class GfsTreeWalkTest extends AbstractGitFileSystemTest {
   }
 
 
+  @Test
+  public void walkGfsRecursivelyWhenDirectoriesAreNotLoaded_theDirectoriesShouldNotBeLoaded() throws IOException {
+    initGitFileSystem("/dir1/a.txt", "/dir1/sub/b.txt", "/dir2/c.txt");
+    assertTrue(Files.exists(gfs.getPath("/dir1")));
+    long before = objService.getLoadedBytes();
+    assertWalk(true, "/dir1/a.txt", "/dir1/sub/b.txt", "/dir2/c.txt");
+    assertEquals(before, objService.getLoadedBytes());
+  }
+
+  @Test
+  public void walkGfsRecursivelyWhenOneSubtreeIsModified_theModifiedFileShouldHaveTheNewBlobId() throws IOException {
+    initGitFileSystem("/dir1/a.txt", "/dir1/sub/b.txt", "/dir2/c.txt");
+    byte[] data = someBytes();
+    writeToGfs("/dir1/sub/b.txt", data);
+    TreeWalk tw = forPath("/dir1/sub/b.txt");
+    assertEquals(calculateBlobId(data), TreeUtils.getObjectId(tw));
+  }
+
+  @Test
+  public void walkGfsRecursivelyWhenDirectoriesAreNotLoaded_theIdsShouldMatchTheCommitTree() throws IOException {
+    initGitFileSystem("/dir1/a.txt", "/dir1/sub/b.txt", "/dir2/c.txt");
+    try(TreeWalk tw = prepareTreeWalk(true)) {
+      tw.addTree(gfs.getStatusProvider().commit().getTree());
+      while(tw.next())
+        assertEquals(tw.getObjectId(1), tw.getObjectId(0));
+    }
+  }
+
   @Nonnull
   private TreeWalk prepareTreeWalk(boolean recursive) throws IOException {
     GfsTreeIterator iterator = GfsTreeIterator.iterateRoot(gfs);
@@ -37,19 +37,19 @@ public class BlobSnapshot extends ObjectSnapshot<byte[]> {
 
   @Nonnull
   @Override
-  public ObjectId save(ObjectInserter inserter) throws IOException {
-    return inserter.insert(OBJ_BLOB, getData());
+  protected ObjectId insert(ObjectInserter inserter) throws IOException {
+    return inserter.insert(OBJ_BLOB, data);
   }
 
+  @Nonnull
   @Override
-  protected int getType() {
-    return OBJ_BLOB;
+  protected ObjectId computeId(ObjectInserter.Formatter formatter) {
+    return formatter.idFor(OBJ_BLOB, data);
   }
 
-  @Nonnull
   @Override
-  protected byte[] toByteArray(byte[] bytes) {
-    return bytes;
+  protected int getType() {
+    return OBJ_BLOB;
   }
 
 }
@@ -11,12 +11,12 @@ import org.eclipse.jgit.lib.Repository;
 
 public abstract class ObjectSnapshot<Data> {
 
-  protected final ObjectId id;
   protected final Data data;
+  private volatile ObjectId id;
 
   protected ObjectSnapshot(Data data, @Nullable ObjectId id) {
     this.data = data;
-    this.id = id != null ? id : new Formatter().idFor(getType(), toByteArray(data));
+    this.id = id;
   }
 
   @Nonnull
@@ -26,7 +26,12 @@ public abstract class ObjectSnapshot<Data> {
 
   @Nonnull
   public ObjectId getId() {
-    return id;
+    ObjectId ret = id;
+    if(ret == null) {
+      ret = computeId(new Formatter());
+      id = ret;
+    }
+    return ret;
   }
 
   @Nonnull
@@ -39,22 +44,30 @@ public abstract class ObjectSnapshot<Data> {
   }
 
   @Nonnull
-  public abstract ObjectId save(ObjectInserter inserter) throws IOException;
+  public ObjectId save(ObjectInserter inserter) throws IOException {
+    ObjectId ret = insert(inserter);
+    if(id == null)
+      id = ret;
+    return ret;
+  }
 
-  protected abstract int getType();
+  @Nonnull
+  protected abstract ObjectId insert(ObjectInserter inserter) throws IOException;
 
   @Nonnull
-  protected abstract byte[] toByteArray(Data data);
+  protected abstract ObjectId computeId(Formatter formatter);
+
+  protected abstract int getType();
 
   @Override
   public boolean equals(@Nullable Object that) {
     return this == that ||
-             that != null && that instanceof ObjectSnapshot && id.equals(((ObjectSnapshot)that).id);
+             that != null && that instanceof ObjectSnapshot && getId().equals(((ObjectSnapshot)that).getId());
 
   }
 
   @Override
   public int hashCode() {
-    return id.hashCode();
+    return getId().hashCode();
   }
 }
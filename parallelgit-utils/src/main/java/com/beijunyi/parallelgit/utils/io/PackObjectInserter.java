@@ -0,0 +1,435 @@
+package com.beijunyi.parallelgit.utils.io;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.LargeObjectException;
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.internal.storage.file.PackIndexWriter;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.transport.PackParser;
+import org.eclipse.jgit.transport.PackedObjectInfo;
+import org.eclipse.jgit.util.IO;
+
+import static org.eclipse.jgit.lib.Constants.*;
+
+public class PackObjectInserter extends ObjectInserter {
+
+  private static final int IN_MEMORY_LIMIT = 1024 * 1024;
+  private static final int PACK_VERSION = 2;
+  private static final int INDEX_VERSION = 2;
+
+  private final ObjectDirectory db;
+  private final ObjectIdOwnerMap<PackedObjectInfo> objectMap = new ObjectIdOwnerMap<>();
+  private final List<PackedObjectInfo> objectList = new ArrayList<>();
+  private final byte[] deflateBuffer = new byte[8192];
+
+  private File tmpPack;
+  private PackStream pack;
+  private Deflater deflater;
+  private ObjectInserter delegate;
+
+  public PackObjectInserter(ObjectDirectory db) {
+    this.db = db;
+  }
+
+  @Nonnull
+  public static ObjectInserter forRepository(Repository repo) {
+    ObjectDatabase db = repo.getObjectDatabase();
+    if(db instanceof ObjectDirectory)
+      return new PackObjectInserter((ObjectDirectory) db);
+    return repo.newObjectInserter();
+  }
+
+  @Override
+  public synchronized ObjectId insert(int type, byte[] data, int off, int len) throws IOException {
+    ObjectId id = idFor(type, data, off, len);
+    if(objectMap.contains(id) || db.has(id))
+      return id;
+    PackStream out = beginObject(type, len);
+    Deflater d = deflater();
+    d.setInput(data, off, len);
+    d.finish();
+    while(!d.finished())
+      out.write(deflateBuffer, 0, d.deflate(deflateBuffer));
+    endObject(id, out);
+    return id;
+  }
+
+  @Override
+  public synchronized ObjectId insert(int type, long len, InputStream in) throws IOException {
+    if(len <= IN_MEMORY_LIMIT) {
+      byte[] data = new byte[(int) len];
+      IO.readFully(in, data, 0, data.length);
+      return insert(type, data, 0, data.length);
+    }
+    MessageDigest md = digest();
+    md.update(encodedTypeString(type));
+    md.update((byte) ' ');
+    md.update(encodeASCII(len));
+    md.update((byte) 0);
+    PackStream out = beginObject(type, len);
+    long offset = out.getObjectOffset();
+    try {
+      Deflater d = deflater();
+      byte[] buf = buffer();
+      long remaining = len;
+      while(remaining > 0) {
+        int n = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+        if(n < 0) throw new EOFException();
+        md.update(buf, 0, n);
+        d.setInput(buf, 0, n);
+        while(!d.needsInput())
+          out.write(deflateBuffer, 0, d.deflate(deflateBuffer));
+        remaining -= n;
+      }
+      d.finish();
+      while(!d.finished())
+        out.write(deflateBuffer, 0, d.deflate(deflateBuffer));
+    } catch(IOException | RuntimeException e) {
+      out.rollback(offset);
+      throw e;
+    }
+    ObjectId id = ObjectId.fromRaw(md.digest());
+    if(objectMap.contains(id) || db.has(id)) {
+      out.rollback(offset);
+      return id;
+    }
+    endObject(id, out);
+    return id;
+  }
+
+  @Override
+  public PackParser newPackParser(InputStream in) throws IOException {
+    if(delegate == null)
+      delegate = db.newInserter();
+    return delegate.newPackParser(in);
+  }
+
+  @Override
+  public ObjectReader newReader() {
+    return new PendingObjectReader(db.newReader());
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    if(delegate != null)
+      delegate.flush();
+    if(objectList.isEmpty())
+      return;
+    byte[] checksum = pack.finish(objectList.size());
+    Collections.sort(objectList);
+    String name = ObjectId.fromRaw(checksum).name();
+    File packDir = tmpPack.getParentFile();
+    File tmpIdx = new File(packDir, tmpPack.getName() + ".idx");
+    try(FileOutputStream file = new FileOutputStream(tmpIdx)) {
+      OutputStream out = new BufferedOutputStream(file);
+      PackIndexWriter.createVersion(out, INDEX_VERSION).write(objectList, checksum);
+      out.flush();
+      file.getChannel().force(true);
+    }
+    File packFile = new File(packDir, "pack-" + name + ".pack");
+    File idxFile = new File(packDir, "pack-" + name + ".idx");
+    if(!tmpPack.renameTo(packFile) || !tmpIdx.renameTo(idxFile)) {
+      packFile.delete();
+      tmpIdx.delete();
+      throw new IOException("Could not rename temporary pack " + tmpPack);
+    }
+    db.openPack(packFile);
+    reset();
+  }
+
+  @Override
+  public synchronized void close() {
+    if(pack != null) {
+      pack.close();
+      tmpPack.delete();
+    }
+    reset();
+    if(deflater != null) {
+      deflater.end();
+      deflater = null;
+    }
+    if(delegate != null) {
+      delegate.close();
+      delegate = null;
+    }
+  }
+
+  private synchronized boolean isPending(AnyObjectId id) {
+    return objectMap.contains(id);
+  }
+
+  @Nonnull
+  private synchronized Set<ObjectId> resolvePending(AbbreviatedObjectId id) {
+    Set<ObjectId> ret = new HashSet<>();
+    for(PackedObjectInfo info : objectList)
+      if(id.prefixCompare(info) == 0)
+        ret.add(info.copy());
+    return ret;
+  }
+
+  @Nullable
+  private synchronized ObjectLoader openPending(AnyObjectId id, int typeHint) throws IOException {
+    PackedObjectInfo info = objectMap.get(id);
+    if(info == null)
+      return null;
+    ObjectLoader ret = pack.load(id, info.getOffset());
+    if(typeHint != ObjectReader.OBJ_ANY && ret.getType() != typeHint)
+      throw new IncorrectObjectTypeException(id.copy(), typeHint);
+    return ret;
+  }
+
+  @Nonnull
+  private PackStream beginObject(int type, long len) throws IOException {
+    if(pack == null) {
+      File packDir = new File(db.getDirectory(), "pack");
+      if(!packDir.isDirectory() && !packDir.mkdirs())
+        throw new IOException("Could not create directory " + packDir);
+      tmpPack = File.createTempFile("insert_", ".pack", packDir);
+      pack = new PackStream(tmpPack);
+      pack.writeHeader();
+    }
+    pack.beginObject();
+    pack.writeObjectHeader(type, len);
+    deflater().reset();
+    return pack;
+  }
+
+  private void endObject(ObjectId id, PackStream out) {
+    PackedObjectInfo info = new PackedObjectInfo(id);
+    info.setOffset(out.getObjectOffset());
+    info.setCRC(out.getObjectCrc());
+    objectMap.add(info);
+    objectList.add(info);
+  }
+
+  @Nonnull
+  private Deflater deflater() {
+    if(deflater == null)
+      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    return deflater;
+  }
+
+  private void reset() {
+    pack = null;
+    tmpPack = null;
+    objectMap.clear();
+    objectList.clear();
+  }
+
+  private static class PackStream extends OutputStream {
+
+    private final RandomAccessFile file;
+    private final CRC32 crc = new CRC32();
+    private final byte[] buffer = new byte[64 * 1024];
+    private int buffered;
+    private long position;
+    private long objectOffset;
+
+    private PackStream(File file) throws IOException {
+      this.file = new RandomAccessFile(file, "rw");
+    }
+
+    private void writeHeader() throws IOException {
+      write(encodeASCII("PACK"));
+      writeInt(PACK_VERSION);
+      writeInt(0);
+    }
+
+    private void beginObject() {
+      objectOffset = position;
+      crc.reset();
+    }
+
+    private void writeObjectHeader(int type, long len) throws IOException {
+      long size = len;
+      int b = (type << 4) | (int) (size & 0x0f);
+      size >>>= 4;
+      while(size != 0) {
+        write(b | 0x80);
+        b = (int) (size & 0x7f);
+        size >>>= 7;
+      }
+      write(b);
+    }
+
+    private long getObjectOffset() {
+      return objectOffset;
+    }
+
+    private int getObjectCrc() {
+      return (int) crc.getValue();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if(buffered == buffer.length)
+        flushBuffer();
+      buffer[buffered++] = (byte) b;
+      crc.update(b);
+      position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      crc.update(b, off, len);
+      position += len;
+      while(len > 0) {
+        if(buffered == buffer.length)
+          flushBuffer();
+        int n = Math.min(len, buffer.length - buffered);
+        System.arraycopy(b, off, buffer, buffered, n);
+        buffered += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    private void writeInt(int value) throws IOException {
+      write(value >>> 24);
+      write(value >>> 16);
+      write(value >>> 8);
+      write(value);
+    }
+
+    @Nonnull
+    private ObjectLoader load(AnyObjectId id, long offset) throws IOException {
+      flushBuffer();
+      try {
+        file.seek(offset);
+        int c = file.read();
+        int type = (c >> 4) & 7;
+        long size = c & 0x0f;
+        for(int shift = 4; (c & 0x80) != 0; shift += 7) {
+          c = file.read();
+          size |= (long) (c & 0x7f) << shift;
+        }
+        if(size > Integer.MAX_VALUE)
+          throw new LargeObjectException(id.copy());
+        return new ObjectLoader.SmallObject(type, inflate((int) size));
+      } finally {
+        file.seek(position);
+      }
+    }
+
+    @Nonnull
+    private byte[] inflate(int size) throws IOException {
+      byte[] ret = new byte[size];
+      Inflater inflater = new Inflater();
+      try {
+        int n = 0;
+        while(n < size) {
+          if(inflater.needsInput()) {
+            int read = file.read(buffer);
+            if(read < 0) throw new EOFException();
+            inflater.setInput(buffer, 0, read);
+          }
+          int inflated = inflater.inflate(ret, n, size - n);
+          if(inflated == 0 && inflater.finished())
+            throw new EOFException();
+          n += inflated;
+        }
+      } catch(DataFormatException e) {
+        throw new IOException(e);
+      } finally {
+        inflater.end();
+      }
+      return ret;
+    }
+
+    private void rollback(long offset) throws IOException {
+      flushBuffer();
+      file.setLength(offset);
+      file.seek(offset);
+      position = offset;
+    }
+
+    @Nonnull
+    private byte[] finish(int count) throws IOException {
+      flushBuffer();
+      file.seek(8);
+      file.writeInt(count);
+      file.seek(0);
+      MessageDigest md = newMessageDigest();
+      int n;
+      while((n = file.read(buffer)) > 0)
+        md.update(buffer, 0, n);
+      byte[] checksum = md.digest();
+      file.write(checksum);
+      file.getChannel().force(true);
+      file.close();
+      return checksum;
+    }
+
+    private void flushBuffer() throws IOException {
+      if(buffered > 0) {
+        file.write(buffer, 0, buffered);
+        buffered = 0;
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        file.close();
+      } catch(IOException ignore) {
+      }
+    }
+
+  }
+
+  private class PendingObjectReader extends ObjectReader {
+
+    private final ObjectReader reader;
+
+    private PendingObjectReader(ObjectReader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public ObjectReader newReader() {
+      return new PendingObjectReader(reader.newReader());
+    }
+
+    @Override
+    public Collection<ObjectId> resolve(AbbreviatedObjectId id) throws IOException {
+      Set<ObjectId> ret = resolvePending(id);
+      ret.addAll(reader.resolve(id));
+      return ret;
+    }
+
+    @Override
+    public boolean has(AnyObjectId objectId, int typeHint) throws IOException {
+      if(isPending(objectId))
+        return typeHint == OBJ_ANY || super.has(objectId, typeHint);
+      return reader.has(objectId, typeHint);
+    }
+
+    @Override
+    public ObjectLoader open(AnyObjectId objectId, int typeHint) throws IOException {
+      ObjectLoader ret = openPending(objectId, typeHint);
+      return ret != null ? ret : reader.open(objectId, typeHint);
+    }
+
+    @Override
+    public Set<ObjectId> getShallowCommits() throws IOException {
+      return reader.getShallowCommits();
+    }
+
+    @Override
+    public void close() {
+      reader.close();
+    }
+
+  }
+
+}
@@ -1,56 +1,80 @@
 package com.beijunyi.parallelgit.utils.io;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.*;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.beijunyi.parallelgit.utils.TreeUtils;
 import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.Paths;
 
 import static com.beijunyi.parallelgit.utils.io.GitFileEntry.*;
 import static java.util.Collections.unmodifiableSortedMap;
 import static org.eclipse.jgit.lib.Constants.OBJ_TREE;
+import static org.eclipse.jgit.lib.Constants.encode;
 
 public class TreeSnapshot extends ObjectSnapshot<SortedMap<String, GitFileEntry>> {
 
-  private TreeFormatter formatter;
+  private volatile TreeFormatter formatter;
+  private volatile SortedMap<String, GitFileEntry> entries;
 
   private TreeSnapshot(SortedMap<String, GitFileEntry> data, @Nullable ObjectId id) {
     super(unmodifiableSortedMap(data), id);
+    entries = this.data;
   }
 
   private TreeSnapshot(SortedMap<String, GitFileEntry> data) {
     this(data, null);
   }
 
+  private TreeSnapshot(TreeFormatter formatter) {
+    super(null, null);
+    this.formatter = formatter;
+  }
+
   @Nonnull
   @Override
-  public ObjectId save(ObjectInserter inserter) throws IOException {
-    return inserter.insert(format(data));
+  public SortedMap<String, GitFileEntry> getData() {
+    SortedMap<String, GitFileEntry> ret = entries;
+    if(ret == null) {
+      synchronized(this) {
+        ret = entries;
+        if(ret == null) {
+          ret = unmodifiableSortedMap(parse(formatter.toByteArray()));
+          entries = ret;
+        }
+      }
+    }
+    return ret;
   }
 
+  @Nonnull
   @Override
-  protected int getType() {
-    return OBJ_TREE;
+  protected ObjectId insert(ObjectInserter inserter) throws IOException {
+    return inserter.insert(format());
   }
 
   @Nonnull
   @Override
-  protected byte[] toByteArray(SortedMap<String, GitFileEntry> stringGitFileEntrySortedMap) {
-    return format(data).toByteArray();
+  protected ObjectId computeId(ObjectInserter.Formatter formatter) {
+    return format().computeId(formatter);
+  }
+
+  @Override
+  protected int getType() {
+    return OBJ_TREE;
   }
 
   public boolean hasChild(String name) {
-    return data.containsKey(name);
+    return getData().containsKey(name);
   }
 
   @Nonnull
   public GitFileEntry getChild(String name) {
-    GitFileEntry entry = data.get(name);
+    GitFileEntry entry = getData().get(name);
     return entry != null ? entry : missingEntry();
   }
 
@@ -76,16 +100,63 @@ public class TreeSnapshot extends ObjectSnapshot<SortedMap<String, GitFileEntry>
   }
 
   @Nonnull
-  private synchronized TreeFormatter format(SortedMap<String, GitFileEntry> data) {
-    if(formatter == null) {
-      formatter = new TreeFormatter();
-      for(Map.Entry<String, GitFileEntry> child : data.entrySet()) {
-        String name = child.getKey();
-        GitFileEntry entry = child.getValue();
-        formatter.append(name, entry.getMode(), entry.getId());
+  public static TreeSnapshot capture(TreeFormatter formatter) {
+    return new TreeSnapshot(formatter);
+  }
+
+  @Nonnull
+  private TreeFormatter format() {
+    TreeFormatter ret = formatter;
+    if(ret == null) {
+      synchronized(this) {
+        ret = formatter;
+        if(ret == null) {
+          ret = new TreeFormatter();
+          for(TreeEntry child : sortEntries(data))
+            ret.append(child.name, child.entry.getMode(), child.entry.getId());
+          formatter = ret;
+        }
       }
     }
-    return formatter;
+    return ret;
+  }
+
+  @Nonnull
+  private static SortedMap<String, GitFileEntry> parse(byte[] raw) {
+    SortedMap<String, GitFileEntry> ret = new TreeMap<>();
+    CanonicalTreeParser parser = new CanonicalTreeParser();
+    parser.reset(raw);
+    while(!parser.eof()) {
+      ret.put(parser.getEntryPathString(), newEntry(parser.getEntryObjectId(), parser.getEntryFileMode()));
+      parser.next(1);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static List<TreeEntry> sortEntries(SortedMap<String, GitFileEntry> data) {
+    List<TreeEntry> ret = new ArrayList<>(data.size());
+    for(Map.Entry<String, GitFileEntry> child : data.entrySet())
+      ret.add(new TreeEntry(encode(child.getKey()), child.getValue()));
+    Collections.sort(ret);
+    return ret;
+  }
+
+  private static class TreeEntry implements Comparable<TreeEntry> {
+
+    private final byte[] name;
+    private final GitFileEntry entry;
+
+    private TreeEntry(byte[] name, GitFileEntry entry) {
+      this.name = name;
+      this.entry = entry;
+    }
+
+    @Override
+    public int compareTo(TreeEntry that) {
+      return Paths.compare(name, 0, name.length, entry.getMode().getBits(), that.name, 0, that.name.length, that.entry.getMode().getBits());
+    }
+
   }
 
 }
@@ -34,4 +34,20 @@ public class BlobSnapshotSaveTest extends AbstractParallelGitTest {
     assertEquals(loaded, saved);
   }
 
+  @Test
+  public void captureBlobAndSave_theSnapshotIdShouldEqualTheSavedBlobId() throws IOException {
+    BlobSnapshot snapshot = BlobSnapshot.capture(someBytes());
+    ObjectId saved = snapshot.save(repo);
+
+    assertEquals(saved, snapshot.getId());
+  }
+
+  @Test
+  public void captureBlobAndGetId_theIdShouldEqualTheSavedBlobId() throws IOException {
+    byte[] bytes = someBytes();
+    ObjectId id = BlobSnapshot.capture(bytes).getId();
+
+    assertEquals(BlobSnapshot.capture(bytes).save(repo), id);
+  }
+
 }
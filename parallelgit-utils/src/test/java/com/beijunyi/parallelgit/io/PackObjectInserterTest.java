@@ -0,0 +1,203 @@
+package com.beijunyi.parallelgit.io;
+
+import java.io.*;
+import java.util.Random;
+
+import com.beijunyi.parallelgit.AbstractParallelGitTest;
+import com.beijunyi.parallelgit.utils.io.PackObjectInserter;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.internal.storage.file.PackFile;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.eclipse.jgit.lib.Constants.*;
+import static org.junit.Assert.*;
+
+public class PackObjectInserterTest extends AbstractParallelGitTest {
+
+  private ObjectDirectory db;
+
+  @Before
+  public void setUp() throws IOException {
+    initFileRepository(true);
+    db = (ObjectDirectory) repo.getObjectDatabase();
+  }
+
+  @Test
+  public void forFileRepository_shouldReturnPackObjectInserter() {
+    try(ObjectInserter inserter = PackObjectInserter.forRepository(repo)) {
+      assertTrue(inserter instanceof PackObjectInserter);
+    }
+  }
+
+  @Test
+  public void insertAndFlush_allObjectsShouldBeWrittenIntoOnePack() throws IOException {
+    int packs = db.getPacks().size();
+    ObjectId[] ids = new ObjectId[16];
+    try(ObjectInserter inserter = new PackObjectInserter(db)) {
+      for(int i = 0; i < ids.length; i++)
+        ids[i] = inserter.insert(OBJ_BLOB, encode("blob " + i));
+      inserter.flush();
+    }
+    assertEquals(packs + 1, db.getPacks().size());
+    try(ObjectReader reader = repo.newObjectReader()) {
+      for(int i = 0; i < ids.length; i++)
+        assertArrayEquals(encode("blob " + i), reader.open(ids[i]).getBytes());
+    }
+    for(ObjectId id : ids)
+      assertFalse(db.fileFor(id).exists());
+  }
+
+  @Test
+  public void insert_shouldReturnTheObjectId() throws IOException {
+    byte[] data = someBytes();
+    try(ObjectInserter inserter = new PackObjectInserter(db)) {
+      assertEquals(calculateBlobId(data), inserter.insert(OBJ_BLOB, data));
+    }
+  }
+
+  @Test
+  public void insertSameObjectTwice_thePackShouldContainItOnce() throws IOException {
+    try(ObjectInserter inserter = new PackObjectInserter(db)) {
+      inserter.insert(OBJ_BLOB, encode("same"));
+      inserter.insert(OBJ_BLOB, encode("same"));
+      inserter.insert(OBJ_BLOB, encode("other"));
+      inserter.flush();
+    }
+    assertEquals(2, newestPack().getIndex().getObjectCount());
+  }
+
+  @Test
+  public void insertExistingObject_shouldNotWriteAnyPack() throws IOException {
+    ObjectId existing = writeSomethingToCache();
+    int packs = db.getPacks().size();
+    try(ObjectInserter inserter = new PackObjectInserter(db)) {
+      byte[] data = repo.open(existing).getBytes();
+      assertEquals(existing, inserter.insert(OBJ_BLOB, data));
+      inserter.flush();
+    }
+    assertEquals(packs, db.getPacks().size());
+  }
+
+  @Test
+  public void insertLargeStream_shouldBeReadable() throws IOException {
+    byte[] data = new byte[3 * 1024 * 1024];
+    new Random(7).nextBytes(data);
+    ObjectId id;
+    try(ObjectInserter inserter = new PackObjectInserter(db)) {
+      id = inserter.insert(OBJ_BLOB, data.length, new ByteArrayInputStream(data));
+      inserter.flush();
+    }
+    assertEquals(calculateBlobId(data), id);
+    assertArrayEquals(data, repo.open(id).getBytes(data.length));
+  }
+
+  @Test
+  public void insertLargeStreamTwice_thePackShouldContainItOnce() throws IOException {
+    byte[] data = new byte[2 * 1024 * 1024];
+    new Random(11).nextBytes(data);
+    try(ObjectInserter inserter = new PackObjectInserter(db)) {
+      inserter.insert(OBJ_BLOB, data.length, new ByteArrayInputStream(data));
+      inserter.insert(OBJ_BLOB, data.length, new ByteArrayInputStream(data));
+      ObjectId small = inserter.insert(OBJ_BLOB, encode("small"));
+      inserter.flush();
+      assertArrayEquals(encode("small"), repo.open(small).getBytes());
+    }
+    assertEquals(2, newestPack().getIndex().getObjectCount());
+  }
+
+  @Test
+  public void insertTruncatedStream_thePackShouldStayParsable() throws IOException {
+    byte[] data = new byte[2 * 1024 * 1024];
+    new Random(17).nextBytes(data);
+    ObjectId small;
+    try(ObjectInserter inserter = new PackObjectInserter(db)) {
+      try {
+        inserter.insert(OBJ_BLOB, data.length + 1, new ByteArrayInputStream(data));
+        fail();
+      } catch(EOFException ignore) {
+      }
+      small = inserter.insert(OBJ_BLOB, encode("small"));
+      inserter.flush();
+    }
+    InMemoryRepository copy = new InMemoryRepository(new DfsRepositoryDescription("copy"));
+    try(InputStream in = new FileInputStream(newestPack().getPackFile()); ObjectInserter inserter = copy.newObjectInserter()) {
+      inserter.newPackParser(in).parse(NullProgressMonitor.INSTANCE);
+      inserter.flush();
+    }
+    assertArrayEquals(encode("small"), copy.open(small).getBytes());
+  }
+
+  @Test
+  public void readPendingObjectFromInserterReader_shouldReturnTheObjectData() throws IOException {
+    byte[] data = someBytes();
+    try(ObjectInserter inserter = new PackObjectInserter(db); ObjectReader reader = inserter.newReader()) {
+      ObjectId id = inserter.insert(OBJ_BLOB, data);
+      assertTrue(reader.has(id));
+      assertEquals(OBJ_BLOB, reader.open(id).getType());
+      assertArrayEquals(data, reader.open(id, OBJ_BLOB).getBytes());
+      assertFalse(repo.hasObject(id));
+    }
+  }
+
+  @Test
+  public void readPendingObjectsAfterMoreInserts_shouldReturnEachObjectData() throws IOException {
+    try(ObjectInserter inserter = new PackObjectInserter(db); ObjectReader reader = inserter.newReader()) {
+      ObjectId[] ids = new ObjectId[8];
+      for(int i = 0; i < ids.length; i++) {
+        ids[i] = inserter.insert(OBJ_BLOB, encode("pending " + i));
+        assertArrayEquals(encode("pending " + i), reader.open(ids[i]).getBytes());
+      }
+      for(int i = 0; i < ids.length; i++)
+        assertArrayEquals(encode("pending " + i), reader.open(ids[i]).getBytes());
+      inserter.flush();
+      assertArrayEquals(encode("pending 3"), reader.open(ids[3]).getBytes());
+    }
+  }
+
+  @Test
+  public void readPendingLargeStreamFromInserterReader_shouldReturnTheObjectData() throws IOException {
+    byte[] data = new byte[2 * 1024 * 1024];
+    new Random(13).nextBytes(data);
+    try(ObjectInserter inserter = new PackObjectInserter(db); ObjectReader reader = inserter.newReader()) {
+      ObjectId id = inserter.insert(OBJ_BLOB, data.length, new ByteArrayInputStream(data));
+      assertArrayEquals(data, reader.open(id).getBytes(data.length));
+    }
+  }
+
+  @Test
+  public void readExistingObjectFromInserterReader_shouldReturnTheObjectData() throws IOException {
+    ObjectId existing = writeSomethingToCache();
+    try(ObjectInserter inserter = new PackObjectInserter(db); ObjectReader reader = inserter.newReader()) {
+      assertTrue(reader.has(existing));
+      assertArrayEquals(repo.open(existing).getBytes(), reader.open(existing).getBytes());
+    }
+  }
+
+  @Test
+  public void closeWithoutFlush_shouldLeaveNoTemporaryFile() throws IOException {
+    try(ObjectInserter inserter = new PackObjectInserter(db)) {
+      inserter.insert(OBJ_BLOB, someBytes());
+    }
+    File[] files = new File(db.getDirectory(), "pack").listFiles();
+    assertNotNull(files);
+    for(File file : files)
+      assertFalse(file.getName().startsWith("insert_"));
+  }
+
+  private PackFile newestPack() {
+    PackFile ret = null;
+    for(PackFile pack : db.getPacks())
+      if(ret == null || pack.getPackFile().lastModified() >= ret.getPackFile().lastModified())
+        ret = pack;
+    assertNotNull(ret);
+    return ret;
+  }
+
+}
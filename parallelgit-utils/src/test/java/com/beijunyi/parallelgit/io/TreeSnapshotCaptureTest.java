@@ -8,6 +8,8 @@ import com.beijunyi.parallelgit.AbstractParallelGitTest;
 import com.beijunyi.parallelgit.utils.io.GitFileEntry;
 import com.beijunyi.parallelgit.utils.io.TreeSnapshot;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.TreeFormatter;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -55,5 +57,19 @@ public class TreeSnapshotCaptureTest extends AbstractParallelGitTest {
     assertEquals(EXECUTABLE_FILE, snapshot.getChild("file2.txt").getMode());
   }
 
+  @Test
+  public void captureFormattedSnapshot_theResultShouldContainTheFormattedEntries() throws IOException {
+    ObjectId blob = someObjectId();
+    ObjectId tree = someObjectId();
+    TreeFormatter formatter = new TreeFormatter();
+    formatter.append("dir", TREE, tree);
+    formatter.append("file.txt", EXECUTABLE_FILE, blob);
+    TreeSnapshot snapshot = TreeSnapshot.capture(formatter);
+    assertEquals(formatter.computeId(new ObjectInserter.Formatter()), snapshot.getId());
+    assertEquals(newEntry(tree, TREE), snapshot.getChild("dir"));
+    assertEquals(newEntry(blob, EXECUTABLE_FILE), snapshot.getChild("file.txt"));
+    assertFalse(snapshot.hasChild("non_existent_file.txt"));
+  }
+
 
 }
@@ -8,11 +8,14 @@ import com.beijunyi.parallelgit.AbstractParallelGitTest;
 import com.beijunyi.parallelgit.utils.io.GitFileEntry;
 import com.beijunyi.parallelgit.utils.io.TreeSnapshot;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.TreeFormatter;
 import org.junit.Before;
 import org.junit.Test;
 
 import static com.beijunyi.parallelgit.utils.io.GitFileEntry.newEntry;
 import static org.eclipse.jgit.lib.FileMode.REGULAR_FILE;
+import static org.eclipse.jgit.lib.FileMode.TREE;
 import static org.junit.Assert.assertEquals;
 
 public class TreeSnapshotSaveTest extends AbstractParallelGitTest {
@@ -44,4 +47,37 @@ public class TreeSnapshotSaveTest extends AbstractParallelGitTest {
     assertEquals(loaded, saved);
   }
 
+  @Test
+  public void captureSnapshotAndSave_theSnapshotIdShouldEqualTheSavedTreeId() throws IOException {
+    SortedMap<String, GitFileEntry> children = new TreeMap<>();
+    children.put("file.txt", newEntry(someObjectId(), REGULAR_FILE));
+    TreeSnapshot snapshot = TreeSnapshot.capture(children);
+    ObjectId saved = snapshot.save(repo);
+
+    assertEquals(saved, snapshot.getId());
+  }
+
+  @Test
+  public void captureSnapshotAndGetId_theIdShouldEqualTheSavedTreeId() throws IOException {
+    SortedMap<String, GitFileEntry> children = new TreeMap<>();
+    children.put("file.txt", newEntry(someObjectId(), REGULAR_FILE));
+    ObjectId id = TreeSnapshot.capture(children).getId();
+
+    assertEquals(TreeSnapshot.capture(children).save(repo), id);
+  }
+
+  @Test
+  public void captureFileAndDirectoryWithSamePrefix_theEntriesShouldBeSavedInGitOrder() throws IOException {
+    GitFileEntry file = newEntry(someObjectId(), REGULAR_FILE);
+    GitFileEntry dir = newEntry(someObjectId(), TREE);
+    SortedMap<String, GitFileEntry> children = new TreeMap<>();
+    children.put("a", dir);
+    children.put("a.txt", file);
+
+    TreeFormatter expected = new TreeFormatter();
+    expected.append("a.txt", file.getMode(), file.getId());
+    expected.append("a", dir.getMode(), dir.getId());
+    assertEquals(expected.computeId(new ObjectInserter.Formatter()), TreeSnapshot.capture(children).save(repo));
+  }
+
 }